@@ -0,0 +1,457 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+@SuppressWarnings("unchecked")
+/**
+ * a long indexed variant of BlockList, for holding more than Integer.MAX_VALUE elements. The leaf arrays are laid out just like BlockList's, with the 'next
+ * empty position' stored at index 0, but the spine itself is split into chunks of leaves, so that no one array has to hold a reference to every leaf.
+ *
+ * The number of elements in each chunk is kept alongside the chunks, along with a Fenwick tree over those counts, so finding an index walks down the tree
+ * to its chunk in log time, and then scans the leaves of that one chunk, rather than every leaf of the list. A chunk never holds more than
+ * Integer.MAX_VALUE elements, so an offset within a chunk always fits in an int.
+ *
+ * This collection is not thread safe.
+ */
+public class BigBlockList<E> extends AbstractCollection<E> {
+
+    public static final int DEFAULT_BLOCK_SIZE = BlockList.DEFAULT_BLOCK_SIZE;
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+    public static final int MINIMUM_CHUNK_SIZE = 4;
+
+    private final int blockSize;
+    private final int chunkSize;
+    private E[][][] chunks;
+    private int[] chunkBlockCounts;
+    private long[] chunkSizes;
+    private long[] chunkSizeTree;
+    private int numChunks;
+    private long size;
+    private int revision;
+
+    private int foundChunk;
+    private int foundBlock;
+    private int foundOffset;
+
+    public BigBlockList() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param blkSize
+     *            the number of elements in a leaf
+     * @param chkSize
+     *            the number of leaves in a chunk, which is lowered if need be, so that a chunk holds no more than Integer.MAX_VALUE elements
+     */
+    public BigBlockList(int blkSize, int chkSize) {
+        blockSize = blkSize < BlockList.MINIMUM_BLOCK_SIZE ? BlockList.MINIMUM_BLOCK_SIZE : blkSize;
+        if (blockSize > (Integer.MAX_VALUE / MINIMUM_CHUNK_SIZE)) {
+            throw new IllegalArgumentException("Invalid block size: " + blkSize);
+        }
+        chunkSize = Math.min(chkSize < MINIMUM_CHUNK_SIZE ? MINIMUM_CHUNK_SIZE : chkSize, Integer.MAX_VALUE / blockSize);
+        chunks = (E[][][]) new Object[1][][];
+        chunkBlockCounts = new int[1];
+        chunkSizes = new long[1];
+        chunkSizeTree = new long[2];
+        numChunks = 0;
+        size = 0;
+        revision = 0;
+    }
+
+    public long sizeAsLong() {
+        return size;
+    }
+
+    /**
+     * @return the number of elements, or Integer.MAX_VALUE if there are more than that
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public E get(long index) {
+        checkIndex(index);
+        find(index);
+
+        return chunks[foundChunk][foundBlock][1 + foundOffset];
+    }
+
+    public E set(long index, E element) {
+        checkIndex(index);
+        find(index);
+
+        E[] blk = chunks[foundChunk][foundBlock];
+        E oldValue = blk[1 + foundOffset];
+        blk[1 + foundOffset] = element;
+        return oldValue;
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (numChunks == 0) {
+            insertChunk(0);
+        }
+
+        int c = numChunks - 1;
+        int b = chunkBlockCounts[c] - 1;
+        E[] blk = chunks[c][b];
+        int emptyPos = ((Integer) blk[0]).intValue();
+        if (emptyPos == blockSize) {
+            if (chunkBlockCounts[c] == chunkSize) {
+                c = numChunks;
+                insertChunk(c);
+                b = 0;
+            } else {
+                b++;
+                insertBlock(c, b);
+            }
+            blk = chunks[c][b];
+            emptyPos = 0;
+        }
+
+        blk[1 + emptyPos] = element;
+        blk[0] = (E) Integer.valueOf(emptyPos + 1);
+        addToChunkSize(c, 1);
+        size++;
+        revision++;
+        return true;
+    }
+
+    public void add(long index, E element) {
+        if ((index < 0) || (index > size)) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+
+        if (index == size) {
+            add(element);
+            return;
+        }
+
+        find(index);
+        E[] blk = chunks[foundChunk][foundBlock];
+        if (((Integer) blk[0]).intValue() == blockSize) {
+            if (chunkBlockCounts[foundChunk] == chunkSize) {
+                splitChunk(foundChunk);
+                find(index);
+            }
+            splitBlock(foundChunk, foundBlock);
+            int half = ((Integer) chunks[foundChunk][foundBlock][0]).intValue();
+            if (foundOffset >= half) {
+                foundBlock++;
+                foundOffset -= half;
+            }
+            blk = chunks[foundChunk][foundBlock];
+        }
+
+        int emptyPos = ((Integer) blk[0]).intValue();
+        System.arraycopy(blk, 1 + foundOffset, blk, 1 + foundOffset + 1, emptyPos - foundOffset);
+        blk[1 + foundOffset] = element;
+        blk[0] = (E) Integer.valueOf(emptyPos + 1);
+        addToChunkSize(foundChunk, 1);
+        size++;
+        revision++;
+    }
+
+    public E remove(long index) {
+        checkIndex(index);
+        find(index);
+
+        return remove(foundChunk, foundBlock, foundOffset);
+    }
+
+    @Override
+    public void clear() {
+        chunks = (E[][][]) new Object[1][][];
+        chunkBlockCounts = new int[1];
+        chunkSizes = new long[1];
+        chunkSizeTree = new long[2];
+        numChunks = 0;
+        size = 0;
+        revision++;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new BigBlockListIterator();
+    }
+
+    private E remove(int chunkIndex, int blkIndex, int blkOffset) {
+        E[][] chunk = chunks[chunkIndex];
+        E[] blk = chunk[blkIndex];
+        E e = blk[1 + blkOffset];
+        int emptyPos = ((Integer) blk[0]).intValue();
+
+        System.arraycopy(blk, 1 + blkOffset + 1, blk, 1 + blkOffset, emptyPos - blkOffset - 1);
+        blk[emptyPos] = null;
+        blk[0] = (E) Integer.valueOf(emptyPos - 1);
+        addToChunkSize(chunkIndex, -1);
+        size--;
+        revision++;
+
+        if (emptyPos == 1) {
+            int blockCount = chunkBlockCounts[chunkIndex];
+            if (blockCount == 1) {
+                removeChunk(chunkIndex);
+            } else {
+                System.arraycopy(chunk, blkIndex + 1, chunk, blkIndex, blockCount - blkIndex - 1);
+                chunk[blockCount - 1] = null;
+                chunkBlockCounts[chunkIndex] = blockCount - 1;
+            }
+        }
+        return e;
+    }
+
+    /**
+     * locates the element at index, which must be in range, leaving its position in foundChunk, foundBlock and foundOffset
+     */
+    private void find(long index) {
+        long offset = 0;
+        int c = 0;
+        for (int step = Integer.highestOneBit(numChunks); step > 0; step >>= 1) {
+            int next = c + step;
+            if ((next <= numChunks) && ((offset + chunkSizeTree[next]) <= index)) {
+                c = next;
+                offset += chunkSizeTree[next];
+            }
+        }
+
+        int chunkOffset = (int) (index - offset);
+        E[][] chunk = chunks[c];
+        int blockCount = chunkBlockCounts[c];
+        int b;
+        if (chunkOffset < (chunkSizes[c] / 2)) {
+            b = 0;
+            int emptyPos = ((Integer) chunk[b][0]).intValue();
+            while (chunkOffset >= emptyPos) {
+                chunkOffset -= emptyPos;
+                emptyPos = ((Integer) chunk[++b][0]).intValue();
+            }
+        } else {
+            b = blockCount - 1;
+            chunkOffset = (int) (chunkSizes[c] - chunkOffset);
+            int emptyPos = ((Integer) chunk[b][0]).intValue();
+            while (chunkOffset > emptyPos) {
+                chunkOffset -= emptyPos;
+                emptyPos = ((Integer) chunk[--b][0]).intValue();
+            }
+            chunkOffset = emptyPos - chunkOffset;
+        }
+
+        foundChunk = c;
+        foundBlock = b;
+        foundOffset = chunkOffset;
+    }
+
+    private void insertChunk(int chunkIndex) {
+        if (numChunks == chunks.length) {
+            int newLength = chunks.length * 2;
+            chunks = Arrays.copyOf(chunks, newLength);
+            chunkBlockCounts = Arrays.copyOf(chunkBlockCounts, newLength);
+            chunkSizes = Arrays.copyOf(chunkSizes, newLength);
+            chunkSizeTree = new long[newLength + 1];
+        }
+
+        System.arraycopy(chunks, chunkIndex, chunks, chunkIndex + 1, numChunks - chunkIndex);
+        System.arraycopy(chunkBlockCounts, chunkIndex, chunkBlockCounts, chunkIndex + 1, numChunks - chunkIndex);
+        System.arraycopy(chunkSizes, chunkIndex, chunkSizes, chunkIndex + 1, numChunks - chunkIndex);
+
+        E[][] chunk = (E[][]) new Object[chunkSize][];
+        chunk[0] = newLeaf();
+        chunks[chunkIndex] = chunk;
+        chunkBlockCounts[chunkIndex] = 1;
+        chunkSizes[chunkIndex] = 0;
+        numChunks++;
+        rebuildChunkSizeTree();
+    }
+
+    private void removeChunk(int chunkIndex) {
+        System.arraycopy(chunks, chunkIndex + 1, chunks, chunkIndex, numChunks - chunkIndex - 1);
+        System.arraycopy(chunkBlockCounts, chunkIndex + 1, chunkBlockCounts, chunkIndex, numChunks - chunkIndex - 1);
+        System.arraycopy(chunkSizes, chunkIndex + 1, chunkSizes, chunkIndex, numChunks - chunkIndex - 1);
+        numChunks--;
+        chunks[numChunks] = null;
+        rebuildChunkSizeTree();
+    }
+
+    /**
+     * moves the upper half of the leaves of a full chunk to a new chunk after it
+     */
+    private void splitChunk(int chunkIndex) {
+        insertChunk(chunkIndex + 1);
+
+        E[][] chunk = chunks[chunkIndex];
+        E[][] newChunk = chunks[chunkIndex + 1];
+        int half = chunkSize / 2;
+        int moved = chunkSize - half;
+        System.arraycopy(chunk, half, newChunk, 0, moved);
+        Arrays.fill(chunk, half, chunkSize, null);
+
+        long movedSize = 0;
+        for (int b = 0; b < moved; b++) {
+            movedSize += ((Integer) newChunk[b][0]).intValue();
+        }
+
+        chunkBlockCounts[chunkIndex] = half;
+        chunkBlockCounts[chunkIndex + 1] = moved;
+        chunkSizes[chunkIndex] -= movedSize;
+        chunkSizes[chunkIndex + 1] = movedSize;
+        rebuildChunkSizeTree();
+    }
+
+    private void addToChunkSize(int chunkIndex, long delta) {
+        chunkSizes[chunkIndex] += delta;
+        for (int i = chunkIndex + 1; i <= numChunks; i += i & -i) {
+            chunkSizeTree[i] += delta;
+        }
+    }
+
+    /**
+     * rebuilds the Fenwick tree over the chunk sizes, after chunks have been inserted or removed. Node i holds the sum of the sizes of the chunks from
+     * i - (i &amp; -i), inclusive, to i, exclusive.
+     */
+    private void rebuildChunkSizeTree() {
+        for (int i = 1; i <= numChunks; i++) {
+            chunkSizeTree[i] = chunkSizes[i - 1];
+        }
+        for (int i = 1; i <= numChunks; i++) {
+            int parent = i + (i & -i);
+            if (parent <= numChunks) {
+                chunkSizeTree[parent] += chunkSizeTree[i];
+            }
+        }
+    }
+
+    /**
+     * moves the upper half of the elements of a full leaf to a new leaf after it, in a chunk that has room for it
+     */
+    private void splitBlock(int chunkIndex, int blkIndex) {
+        insertBlock(chunkIndex, blkIndex + 1);
+
+        E[] blk = chunks[chunkIndex][blkIndex];
+        E[] newBlk = chunks[chunkIndex][blkIndex + 1];
+        int half = blockSize / 2;
+        int moved = blockSize - half;
+        System.arraycopy(blk, 1 + half, newBlk, 1, moved);
+        Arrays.fill(blk, 1 + half, 1 + blockSize, null);
+        blk[0] = (E) Integer.valueOf(half);
+        newBlk[0] = (E) Integer.valueOf(moved);
+    }
+
+    private void insertBlock(int chunkIndex, int blkIndex) {
+        E[][] chunk = chunks[chunkIndex];
+        int blockCount = chunkBlockCounts[chunkIndex];
+        System.arraycopy(chunk, blkIndex, chunk, blkIndex + 1, blockCount - blkIndex);
+        chunk[blkIndex] = newLeaf();
+        chunkBlockCounts[chunkIndex] = blockCount + 1;
+    }
+
+    private E[] newLeaf() {
+        E[] blk = (E[]) new Object[1 + blockSize];
+        blk[0] = (E) Integer.valueOf(0);
+        return blk;
+    }
+
+    private void checkIndex(long index) {
+        if ((index < 0) || (index >= size)) {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is out of bounds [0 <= i < " + size + "]");
+        }
+    }
+
+    private class BigBlockListIterator implements Iterator<E> {
+
+        private int iteratorRevision = revision;
+        private long pos = 0;
+        private int chunkIndex = 0;
+        private int blkIndex = 0;
+        private int blkOffset = 0;
+        private boolean canRemove = false;
+
+        @Override
+        public boolean hasNext() {
+            if (revision != iteratorRevision) {
+                throw new ConcurrentModificationException();
+            }
+
+            return pos < size;
+        }
+
+        @Override
+        public E next() {
+            if (revision != iteratorRevision) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (pos >= size) {
+                throw new NoSuchElementException("Index (" + pos + ") is out of bounds [0 <= i < " + size + "]");
+            }
+
+            E[] blk = chunks[chunkIndex][blkIndex];
+            while (blkOffset >= ((Integer) blk[0]).intValue()) {
+                blkOffset = 0;
+                if (++blkIndex == chunkBlockCounts[chunkIndex]) {
+                    blkIndex = 0;
+                    chunkIndex++;
+                }
+                blk = chunks[chunkIndex][blkIndex];
+            }
+
+            pos++;
+            canRemove = true;
+            return blk[1 + blkOffset++];
+        }
+
+        @Override
+        public void remove() {
+            if (revision != iteratorRevision) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (!canRemove) {
+                throw new IllegalStateException("No object returned previously");
+            }
+
+            int blockCount = chunkBlockCounts[chunkIndex];
+            boolean lastInBlock = ((Integer) chunks[chunkIndex][blkIndex][0]).intValue() == 1;
+            BigBlockList.this.remove(chunkIndex, blkIndex, --blkOffset);
+            if (lastInBlock) {
+                if (blockCount == 1) {
+                    blkIndex = 0;
+                } else if (blkIndex == (blockCount - 1)) {
+                    blkIndex = 0;
+                    chunkIndex++;
+                }
+                blkOffset = 0;
+            }
+
+            pos--;
+            canRemove = false;
+            iteratorRevision = revision;
+        }
+    }
+}
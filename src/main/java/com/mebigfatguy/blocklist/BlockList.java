@@ -20,15 +20,21 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 
 @SuppressWarnings("unchecked")
 /**
@@ -39,21 +45,32 @@ import java.util.Objects;
  * The advantage to this List implementation is inserts anywhere never require the reallocation of the entire list, nor the re-shuffling of the entire list. The
  * modifications are limited to moving the block array, and perhaps reallocating two leaf blocks.
  *
- * Since the data is held in sub-blocks, there is no massive array allocated, making large lists easier to allocate in memory.
+ * Since the data is held in sub-blocks, there is no massive array allocated, making large lists easier to allocate in memory. Blocks are only allocated
+ * once elements are added, and while the list fits in one block, that block starts small and grows to the block size as needed, so small lists stay small.
+ *
+ * Optionally, blocks that go unused for a while can be held compressed, see {@link #enableColdStorage(ElementCodec, long, int)}, and leaf arrays can be
+ * recycled through a {@link LeafPool}. Checkpoints of just the blocks that have changed can be written with {@link #writeCheckpoint(ObjectOutput, boolean)}.
  *
  * This list is not thread safe.
  */
 public class BlockList<E> implements List<E>, Externalizable {
 
     private static final long serialVersionUID = -2221663525758235084L;
-    public static final int DEFAULT_BLOCK_COUNT = 1;
+    public static final int DEFAULT_BLOCK_COUNT = 0;
     public static final int MINIMUM_BLOCK_SIZE = 64;
     public static final int DEFAULT_BLOCK_SIZE = 256;
+    public static final int SMALL_BLOCK_SIZE = 8;
+
+    private static final Object[][] EMPTY_BLOCKS = new Object[0][];
 
     private E[][] blocks;
     private int blockSize;
     private int size;
     private int revision;
+    private ColdBlockStore<E> coldStore;
+    private LeafPool leafPool;
+    private DirtyBlockTracker checkpoints;
+    private Map<Object[], Long> blockHashes;
 
     public BlockList() {
         this(DEFAULT_BLOCK_SIZE);
@@ -64,56 +81,82 @@ public class BlockList<E> implements List<E>, Externalizable {
     }
 
     public BlockList(int initialBlkCount, int blkSize) {
-        blocks = (E[][]) new Object[initialBlkCount][];
+        this(initialBlkCount, blkSize, null);
+    }
+
+    public BlockList(LeafPool pool) {
+        this(DEFAULT_BLOCK_COUNT, pool.getBlockSize(), pool);
+    }
+
+    public BlockList(int initialBlkCount, int blkSize, LeafPool pool) {
+        if ((pool != null) && (pool.getBlockSize() != blkSize)) {
+            throw new IllegalArgumentException("Leaf pool block size (" + pool.getBlockSize() + ") does not match block size (" + blkSize + ")");
+        }
+
+        leafPool = pool;
+        blocks = (initialBlkCount == 0) ? (E[][]) EMPTY_BLOCKS : (E[][]) new Object[initialBlkCount][];
         blockSize = blkSize;
         size = 0;
         for (int b = 0; b < blocks.length; b++) {
-            blocks[b] = (E[]) new Object[1 + blockSize];
-            blocks[b][0] = (E) Integer.valueOf(0);
+            blocks[b] = newLeaf();
         }
         revision = 0;
     }
 
+    private BlockList(E[][] blks, int blkSize, int sz) {
+        blocks = blks;
+        blockSize = blkSize;
+        size = sz;
+        revision = 0;
+    }
+
     @Override
     public boolean equals(Object o) {
 
+        if (o == this) {
+            return true;
+        }
+
+        if (o instanceof BlockList) {
+            return equalBlocks((BlockList<E>) o);
+        }
+
         if (!(o instanceof List)) {
             return false;
         }
 
-        List<E> that = (List<E>) o;
+        List<?> that = (List<?>) o;
         if (this.size != that.size()) {
             return false;
         }
 
-        for (int i = 0; i < size; i++) {
-            Object thisItem = get(i);
-            Object thatItem = that.get(i);
-
-            if (thisItem == null) {
-                return (thatItem == null);
-            }
-
-            if (thatItem == null) {
-                return false;
-            }
-
-            if (!thisItem.equals(thatItem)) {
-                return false;
+        Iterator<?> it = that.iterator();
+        for (int b = 0; b < blocks.length; b++) {
+            E[] blk = touch(b);
+            int emptyPos = ((Integer) blk[0]).intValue();
+            for (int s = 0; s < emptyPos; s++) {
+                if (!it.hasNext() || !Objects.equals(blk[1 + s], it.next())) {
+                    return false;
+                }
             }
         }
-        return true;
+        return !it.hasNext();
     }
 
+    /**
+     * returns the hash code defined by List.hashCode. The hash of each block's elements is cached until the block is modified, and the block hashes are
+     * combined by their position, so only the blocks modified since the last call are rehashed.
+     */
     @Override
     public int hashCode() {
+        if (blockHashes == null) {
+            blockHashes = new IdentityHashMap<>();
+        }
+
         int hc = 1;
-        for (E[] blk : blocks) {
-            int emptyPos = ((Integer) blk[0]).intValue();
-            for (int s = 0; s < emptyPos; s++) {
-                E e = blk[1 + s];
-                hc = (31 * hc) + ((e == null) ? 0 : e.hashCode());
-            }
+        for (int b = 0; b < blocks.length; b++) {
+            long blockHash = blockHash(b);
+            hc = (hc * (int) blockHash) + (int) (blockHash >>> 32);
         }
 
         return hc;
@@ -121,6 +164,8 @@ public class BlockList<E> implements List<E>, Externalizable {
 
     @Override
     public boolean add(E element) {
+        sweepIfDue();
+
         long blockPtr = findBlock(size, true);
         if (blockPtr < 0) {
             grow();
@@ -128,8 +173,11 @@ public class BlockList<E> implements List<E>, Externalizable {
         }
 
         int blkIndex = (int) (blockPtr >> 32);
-        E[] blk = blocks[blkIndex];
+        E[] blk = modify(blkIndex);
         int emptyPos = ((Integer) blk[0]).intValue();
+        if (emptyPos == (blk.length - 1)) {
+            blk = expandLeaf(blkIndex);
+        }
         blk[1 + emptyPos++] = element;
         blk[0] = (E) Integer.valueOf(emptyPos);
         size++;
@@ -143,6 +191,8 @@ public class BlockList<E> implements List<E>, Externalizable {
             throw new IndexOutOfBoundsException("Invalid index: " + index);
         }
 
+        sweepIfDue();
+
         long blockPtr = findBlock(index, true);
         if (blockPtr < 0) {
             grow();
@@ -152,13 +202,22 @@ public class BlockList<E> implements List<E>, Externalizable {
         int blkIndex = (int) (blockPtr >> 32);
         int blkOffset = (int) blockPtr;
 
-        E[] blk = blocks[blkIndex];
+        add(blkIndex, blkOffset, element);
+    }
+
+    protected void add(int blkIndex, int blkOffset, E element) {
+        E[] blk = modify(blkIndex);
         int emptyPos = ((Integer) blk[0]).intValue();
         if (emptyPos == blockSize) {
             splitBlock(blkIndex, blkOffset);
-            blk = blocks[blkIndex];
-        } else if (blkOffset < emptyPos) {
-            System.arraycopy(blk, 1 + blkOffset, blk, 1 + blkOffset + 1, emptyPos - blkOffset);
+            blk = modify(blkIndex);
+        } else {
+            if (emptyPos == (blk.length - 1)) {
+                blk = expandLeaf(blkIndex);
+            }
+            if (blkOffset < emptyPos) {
+                System.arraycopy(blk, 1 + blkOffset, blk, 1 + blkOffset + 1, emptyPos - blkOffset);
+            }
         }
 
         blk[1 + blkOffset] = element;
@@ -175,10 +234,9 @@ public class BlockList<E> implements List<E>, Externalizable {
             return false;
         }
 
-        for (E e : elements) {
-            add(e);
-        }
-        return !elements.isEmpty();
+        sweepIfDue();
+        insertElements(size, elements.toArray());
+        return true;
     }
 
     @Override
@@ -192,27 +250,37 @@ public class BlockList<E> implements List<E>, Externalizable {
             return false;
         }
 
-        for (E e : elements) {
-            add(index++, e);
-        }
+        sweepIfDue();
+        insertElements(index, elements.toArray());
         return true;
     }
 
     @Override
     public void clear() {
-        blocks = (E[][]) new Object[0][];
-        size = 0;
-        for (int b = 0; b < blocks.length; b++) {
-            blocks[b] = (E[]) new Object[1 + blockSize];
-            blocks[b][0] = (E) Integer.valueOf(0);
+        if (coldStore != null) {
+            coldStore.clear();
         }
+        if (checkpoints != null) {
+            checkpoints.clear();
+        }
+        if (blockHashes != null) {
+            blockHashes.clear();
+        }
+        if (leafPool != null) {
+            for (E[] blk : blocks) {
+                leafPool.give(blk);
+            }
+        }
+        blocks = (E[][]) EMPTY_BLOCKS;
+        size = 0;
         revision++;
     }
 
     @Override
     public boolean contains(Object element) {
 
-        for (E[] blk : blocks) {
+        for (int b = 0; b < blocks.length; b++) {
+            E[] blk = touch(b);
             int emptyPos = ((Integer) blk[0]).intValue();
             for (int s = 0; s < emptyPos; s++) {
                 if (Objects.equals(element, blk[1 + s])) {
@@ -236,6 +304,8 @@ public class BlockList<E> implements List<E>, Externalizable {
 
     @Override
     public E get(int index) {
+        sweepIfDue();
+
         long blockPtr = findBlock(index, false);
         if (blockPtr < 0) {
             throw new IndexOutOfBoundsException("Index (" + index + ") is out of bounds [0 <= i < " + size + "]");
@@ -244,7 +314,7 @@ public class BlockList<E> implements List<E>, Externalizable {
         int blkIndex = (int) (blockPtr >> 32);
         int blkOffset = (int) blockPtr;
 
-        E[] blk = blocks[blkIndex];
+        E[] blk = touch(blkIndex);
         return blk[1 + blkOffset];
     }
 
@@ -252,7 +322,8 @@ public class BlockList<E> implements List<E>, Externalizable {
     public int indexOf(Object element) {
 
         int pos = 0;
-        for (E[] blk : blocks) {
+        for (int b = 0; b < blocks.length; b++) {
+            E[] blk = touch(b);
             int emptyPos = ((Integer) blk[0]).intValue();
             for (int s = 0; s < emptyPos; s++) {
                 if (Objects.equals(element, blk[1 + s])) {
@@ -279,7 +350,7 @@ public class BlockList<E> implements List<E>, Externalizable {
     public int lastIndexOf(Object element) {
         int pos = size - 1;
         for (int b = blocks.length - 1; b >= 0; b--) {
-            E[] blk = blocks[b];
+            E[] blk = touch(b);
             int emptyPos = ((Integer) blk[0]).intValue();
             for (int s = emptyPos - 1; s >= 0; s--) {
                 if (Objects.equals(element, blk[1 + s])) {
@@ -305,6 +376,32 @@ public class BlockList<E> implements List<E>, Externalizable {
         return new BlockListListIterator(index);
     }
 
+    /**
+     * creates a cursor positioned before the element at index, for making a series of edits near one another
+     *
+     * @param index
+     *            the starting position of the cursor, from 0 to size inclusive
+     * @return the cursor
+     */
+    public Cursor cursor(int index) {
+        if ((index < 0) || (index > size)) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return new Cursor(index);
+    }
+
+    /**
+     * creates a view of this list that holds back inserts and removes by index, and applies them to this list together when it is flushed. This list
+     * should only be modified through the view while the view has changes pending.
+     *
+     * @param threshold
+     *            the number of pending inserts and removes at which the view flushes itself
+     * @return the view
+     */
+    public BufferedBlockList<E> buffered(int threshold) {
+        return new BufferedBlockList<>(this, threshold);
+    }
+
     @Override
     public boolean remove(Object element) {
         int pos = indexOf(element);
@@ -319,6 +416,8 @@ public class BlockList<E> implements List<E>, Externalizable {
 
     @Override
     public E remove(int index) {
+        sweepIfDue();
+
         long blockPtr = findBlock(index, false);
         if (blockPtr < 0) {
             revision++;
@@ -332,7 +431,7 @@ public class BlockList<E> implements List<E>, Externalizable {
     }
 
     protected E remove(int blkIndex, int blkOffset) {
-        E[] blk = blocks[blkIndex];
+        E[] blk = modify(blkIndex);
         E e = blk[1 + blkOffset];
         int emptyPos = ((Integer) blk[0]).intValue();
         if (emptyPos == 1) {
@@ -349,19 +448,107 @@ public class BlockList<E> implements List<E>, Externalizable {
         return e;
     }
 
+    /**
+     * removes the elements from fromIndex, inclusive, to toIndex, exclusive. The two blocks at the ends of the range are trimmed in place, and the blocks
+     * in between are dropped from the list all at once, and returned to the leaf pool if there is one.
+     *
+     * @param fromIndex
+     *            the index of the first element to remove
+     * @param toIndex
+     *            the index after the last element to remove
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        if ((fromIndex < 0) || (toIndex > size) || (fromIndex > toIndex)) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") is out of bounds [0 <= i <= " + size + "]");
+        }
+
+        if (fromIndex == toIndex) {
+            return;
+        }
+
+        long startPtr = findBlock(fromIndex, false);
+        removeRange((int) (startPtr >> 32), (int) startPtr, toIndex - fromIndex);
+    }
+
+    /**
+     * removes count elements, starting at an offset in a block, finding the end of the range by walking forward from there
+     */
+    private void removeRange(int startBlk, int startOffset, int count) {
+        int endBlk = startBlk;
+        int endOffset = (startOffset + count) - 1;
+        int blkCount = ((Integer) blocks[endBlk][0]).intValue();
+        while (endOffset >= blkCount) {
+            endOffset -= blkCount;
+            blkCount = ((Integer) blocks[++endBlk][0]).intValue();
+        }
+
+        if (startBlk == endBlk) {
+            E[] blk = modify(startBlk);
+            int emptyPos = ((Integer) blk[0]).intValue();
+            int newEmptyPos = emptyPos - count;
+            System.arraycopy(blk, 1 + endOffset + 1, blk, 1 + startOffset, emptyPos - endOffset - 1);
+            Arrays.fill(blk, 1 + newEmptyPos, 1 + emptyPos, null);
+            blk[0] = (E) Integer.valueOf(newEmptyPos);
+            if (newEmptyPos == 0) {
+                dropBlocks(startBlk, startBlk + 1);
+            }
+        } else {
+            E[] first = modify(startBlk);
+            int firstEmptyPos = ((Integer) first[0]).intValue();
+            Arrays.fill(first, 1 + startOffset, 1 + firstEmptyPos, null);
+            first[0] = (E) Integer.valueOf(startOffset);
+
+            E[] last = modify(endBlk);
+            int lastEmptyPos = ((Integer) last[0]).intValue();
+            int kept = lastEmptyPos - endOffset - 1;
+            System.arraycopy(last, 1 + endOffset + 1, last, 1, kept);
+            Arrays.fill(last, 1 + kept, 1 + lastEmptyPos, null);
+            last[0] = (E) Integer.valueOf(kept);
+
+            dropBlocks((startOffset == 0) ? startBlk : startBlk + 1, (kept == 0) ? endBlk + 1 : endBlk);
+        }
+
+        size -= count;
+        revision++;
+    }
+
+    /**
+     * replaces the elements from fromIndex, inclusive, to toIndex, exclusive, with the elements of a collection, in the order its iterator returns them.
+     * The range is removed as by {@link #removeRange(int, int)}, and the new elements are laid into full blocks that are inserted where the range was.
+     *
+     * @param fromIndex
+     *            the index of the first element to replace
+     * @param toIndex
+     *            the index after the last element to replace
+     * @param elements
+     *            the elements to put in place of the range
+     */
+    public void replaceRange(int fromIndex, int toIndex, Collection<? extends E> elements) {
+        if ((fromIndex < 0) || (toIndex > size) || (fromIndex > toIndex)) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") is out of bounds [0 <= i <= " + size + "]");
+        }
+
+        Object[] src = elements.toArray();
+        removeRange(fromIndex, toIndex);
+        insertElements(fromIndex, src);
+    }
+
     @Override
     public boolean removeAll(Collection<?> elements) {
         boolean removed = false;
 
         for (Object o : elements) {
-            for (E[] blk : blocks) {
+            for (int b = 0; b < blocks.length; b++) {
+                E[] blk = touch(b);
                 int emptyPos = ((Integer) blk[0]).intValue();
                 for (int s = 0; s < emptyPos; s++) {
                     if (Objects.equals(o, blk[1 + s])) {
+                        blk = modify(b);
                         System.arraycopy(blk, 1 + s + 1, blk, 1 + s, emptyPos - s - 1);
                         blk[emptyPos] = null;
                         emptyPos--;
                         blk[0] = (E) Integer.valueOf(emptyPos);
+                        size--;
                         s--;
                         removed = true;
                     }
@@ -379,7 +566,7 @@ public class BlockList<E> implements List<E>, Externalizable {
 
         int pos = 0;
         for (int b = 0; b < blocks.length; b++) {
-            E[] blk = blocks[b];
+            E[] blk = touch(b);
             int emptyPos = ((Integer) blk[0]).intValue();
             for (int s = 0; s < emptyPos; s++) {
 
@@ -404,6 +591,8 @@ public class BlockList<E> implements List<E>, Externalizable {
 
     @Override
     public E set(int index, E element) {
+        sweepIfDue();
+
         long blockPtr = findBlock(index, false);
         if (blockPtr < 0) {
             throw new IndexOutOfBoundsException("Index (" + index + ") is out of bounds [0 <= i < " + size + "]");
@@ -412,17 +601,91 @@ public class BlockList<E> implements List<E>, Externalizable {
         int blkIndex = (int) (blockPtr >> 32);
         int blkOffset = (int) blockPtr;
 
-        E[] blk = blocks[blkIndex];
+        E[] blk = modify(blkIndex);
         E oldValue = blk[1 + blkOffset];
         blk[1 + blkOffset] = element;
         return oldValue;
     }
 
+    /**
+     * gets the elements at a batch of indices at once. The indices are sorted, unless they already are, so that all of them can be found in one pass
+     * over the blocks. Blocks that hold none of the indices are skipped by their counts alone.
+     *
+     * @param indices
+     *            the indices of the elements to get, in any order
+     * @param out
+     *            the array to put the elements in, in the same order as their indices
+     */
+    public void getAll(int[] indices, E[] out) {
+        if (out.length < indices.length) {
+            throw new IllegalArgumentException("Output array length (" + out.length + ") is less than the number of indices (" + indices.length + ")");
+        }
+
+        sweepIfDue();
+
+        long[] order = sortOrder(indices);
+        int blkIndex = -1;
+        int blkStart = 0;
+        int blkEnd = 0;
+        E[] blk = null;
+        for (int k = 0; k < indices.length; k++) {
+            int pos = (order == null) ? k : (int) order[k];
+            int index = indices[pos];
+            if (index >= blkEnd) {
+                do {
+                    blkStart = blkEnd;
+                    blkEnd += ((Integer) blocks[++blkIndex][0]).intValue();
+                } while (index >= blkEnd);
+                blk = touch(blkIndex);
+            }
+            out[pos] = blk[1 + (index - blkStart)];
+        }
+    }
+
+    /**
+     * sets the elements at a batch of indices at once, finding all of them in one pass over the blocks. Only the blocks that hold one of the indices are
+     * marked modified. If an index appears more than once, the value given for it last is the one kept.
+     *
+     * @param indices
+     *            the indices of the elements to set, in any order
+     * @param values
+     *            the values to set, in the same order as their indices
+     */
+    public void setAll(int[] indices, E[] values) {
+        if (values.length < indices.length) {
+            throw new IllegalArgumentException("Values array length (" + values.length + ") is less than the number of indices (" + indices.length + ")");
+        }
+
+        sweepIfDue();
+
+        long[] order = sortOrder(indices);
+        int blkIndex = -1;
+        int blkStart = 0;
+        int blkEnd = 0;
+        E[] blk = null;
+        for (int k = 0; k < indices.length; k++) {
+            int pos = (order == null) ? k : (int) order[k];
+            int index = indices[pos];
+            if (index >= blkEnd) {
+                do {
+                    blkStart = blkEnd;
+                    blkEnd += ((Integer) blocks[++blkIndex][0]).intValue();
+                } while (index >= blkEnd);
+                blk = modify(blkIndex);
+            }
+            blk[1 + (index - blkStart)] = values[pos];
+        }
+    }
+
     @Override
     public int size() {
         return size;
     }
 
+    int getRevision() {
+        return revision;
+    }
+
     @Override
     public List<E> subList(int index, int length) {
         throw new UnsupportedOperationException("BlockList.subList not implemented yet");
@@ -432,7 +695,8 @@ public class BlockList<E> implements List<E>, Externalizable {
     public Object[] toArray() {
         Object[] o = new Object[size];
         int pos = 0;
-        for (E[] blk : blocks) {
+        for (int b = 0; b < blocks.length; b++) {
+            E[] blk = touch(b);
             int emptyPos = ((Integer) blk[0]).intValue();
             if (emptyPos > 0) {
                 System.arraycopy(blk, 1 + 0, o, pos, emptyPos);
@@ -450,7 +714,8 @@ public class BlockList<E> implements List<E>, Externalizable {
         }
 
         int pos = 0;
-        for (E[] blk : blocks) {
+        for (int b = 0; b < blocks.length; b++) {
+            E[] blk = touch(b);
             int emptyPos = ((Integer) blk[0]).intValue();
             if (emptyPos > 0) {
                 System.arraycopy(blk, 1 + 0, proto, pos, emptyPos);
@@ -469,7 +734,8 @@ public class BlockList<E> implements List<E>, Externalizable {
         StringBuilder sb = new StringBuilder(size * 10);
         sb.append('[');
         String comma = "";
-        for (E[] blk : blocks) {
+        for (int b = 0; b < blocks.length; b++) {
+            E[] blk = touch(b);
             int emptyPos = ((Integer) blk[0]).intValue();
             for (int i = 0; i < emptyPos; ++i) {
                 sb.append(comma);
@@ -481,6 +747,436 @@ public class BlockList<E> implements List<E>, Externalizable {
         return sb.toString();
     }
 
+    /**
+     * turns on the cold storage tier. Blocks that are not touched for at least idleMillis are encoded with the codec, and deflated. They are inflated
+     * again, transparently, the next time they are accessed. Blocks that are only read are kept inflated in an lru of at most maxInflatedBlocks, and are
+     * dropped back to their compressed form when pushed out of it. Idle blocks are found when the list is used, or when {@link #compressIdleBlocks()} is
+     * called.
+     *
+     * @param codec
+     *            the converter of elements to bytes and back
+     * @param idleMillis
+     *            the time a block must go untouched before being compressed
+     * @param maxInflatedBlocks
+     *            the maximum number of compressed blocks that are held inflated because they have been read
+     */
+    public void enableColdStorage(ElementCodec<E> codec, long idleMillis, int maxInflatedBlocks) {
+        if (codec == null) {
+            throw new IllegalArgumentException("A codec is required for cold storage");
+        }
+        if (maxInflatedBlocks < 1) {
+            throw new IllegalArgumentException("Invalid maximum number of inflated blocks: " + maxInflatedBlocks);
+        }
+
+        disableColdStorage();
+        coldStore = new ColdBlockStore<>(this, codec, idleMillis, maxInflatedBlocks);
+    }
+
+    /**
+     * turns off the cold storage tier, inflating all compressed blocks
+     */
+    public void disableColdStorage() {
+        if (coldStore != null) {
+            coldStore.close(blocks);
+            coldStore = null;
+        }
+    }
+
+    /**
+     * compresses the blocks that haven't been touched since the last time idle blocks were looked for, without waiting for the idle period to pass.
+     *
+     * @return the number of blocks compressed
+     */
+    public int compressIdleBlocks() {
+        if (coldStore == null) {
+            return 0;
+        }
+
+        return coldStore.sweep(blocks);
+    }
+
+    /**
+     * packs the elements of the list into as few blocks as possible, and drops the blocks that are left over, returning them to the leaf pool if there
+     * is one.
+     */
+    public void compact() {
+        int dstBlk = 0;
+        int dstPos = 0;
+        for (int b = 0; b < blocks.length; b++) {
+            E[] src = blocks[b];
+            int emptyPos = ((Integer) src[0]).intValue();
+            if (emptyPos > 0) {
+                src = modify(b);
+            }
+
+            int srcPos = 0;
+            while (srcPos < emptyPos) {
+                E[] dst = modify(dstBlk);
+                int len = Math.min(blockSize - dstPos, emptyPos - srcPos);
+                if ((dst != src) || (dstPos != srcPos)) {
+                    System.arraycopy(src, 1 + srcPos, dst, 1 + dstPos, len);
+                }
+                srcPos += len;
+                dstPos += len;
+                if (dstPos == blockSize) {
+                    dst[0] = (E) Integer.valueOf(blockSize);
+                    dstBlk++;
+                    dstPos = 0;
+                }
+            }
+        }
+
+        if (dstPos > 0) {
+            E[] dst = blocks[dstBlk];
+            dst[0] = (E) Integer.valueOf(dstPos);
+            Arrays.fill(dst, 1 + dstPos, dst.length, null);
+            dstBlk++;
+        }
+
+        if (dstBlk < blocks.length) {
+            for (int b = dstBlk; b < blocks.length; b++) {
+                releaseLeaf(blocks[b]);
+            }
+            blocks = Arrays.copyOf(blocks, dstBlk);
+        }
+        revision++;
+    }
+
+    /**
+     * writes a checkpoint of the list. The first checkpoint written, or any with full set, holds every block. After that, a checkpoint only holds the
+     * blocks that have been modified since the previous one, along with the ids of all blocks in spine order. A list rebuilt from a full checkpoint, with
+     * the deltas that followed it applied in order by {@link #readCheckpoint(ObjectInput)}, is equal to this list at the time of the last one.
+     *
+     * @param out
+     *            the stream to write the checkpoint to
+     * @param full
+     *            whether to write every block, instead of just the modified ones
+     */
+    public void writeCheckpoint(ObjectOutput out, boolean full) throws IOException {
+        if (checkpoints == null) {
+            checkpoints = new DirtyBlockTracker();
+            full = true;
+        }
+
+        int numBlocks = 0;
+        for (E[] blk : blocks) {
+            if (((Integer) blk[0]).intValue() > 0) {
+                numBlocks++;
+            }
+        }
+
+        long[] ids = new long[numBlocks];
+        int[] dirtyBlocks = new int[numBlocks];
+        int numDirty = 0;
+        int numIds = 0;
+        for (int b = 0; b < blocks.length; b++) {
+            E[] blk = blocks[b];
+            if (((Integer) blk[0]).intValue() > 0) {
+                if (full || checkpoints.isDirty(blk)) {
+                    dirtyBlocks[numDirty++] = b;
+                }
+                ids[numIds++] = checkpoints.idOf(blk);
+            }
+        }
+
+        out.writeInt(blockSize);
+        out.writeInt(size);
+        out.writeBoolean(full);
+        out.writeInt(numBlocks);
+        for (long id : ids) {
+            out.writeLong(id);
+        }
+
+        out.writeInt(numDirty);
+        for (int d = 0; d < numDirty; d++) {
+            E[] blk = touch(dirtyBlocks[d]);
+            int emptyPos = ((Integer) blk[0]).intValue();
+            out.writeLong(checkpoints.idOf(blk));
+            out.writeInt(emptyPos);
+            for (int s = 0; s < emptyPos; s++) {
+                out.writeObject(blk[1 + s]);
+            }
+        }
+
+        checkpoints.markClean();
+    }
+
+    /**
+     * applies a checkpoint written by {@link #writeCheckpoint(ObjectOutput, boolean)} to this list. A full checkpoint replaces the contents of the list,
+     * while a delta updates the blocks it holds, and reorders the spine to match.
+     *
+     * @param in
+     *            the stream to read the checkpoint from
+     */
+    public void readCheckpoint(ObjectInput in) throws IOException, ClassNotFoundException {
+        int blkSize = in.readInt();
+        int newSize = in.readInt();
+        boolean full = in.readBoolean();
+
+        if (full) {
+            clear();
+            blockSize = blkSize;
+            checkpoints = new DirtyBlockTracker();
+        } else if ((checkpoints == null) || (blkSize != blockSize)) {
+            throw new StreamCorruptedException("Checkpoint delta read without its base checkpoint");
+        }
+
+        int numBlocks = in.readInt();
+        long[] ids = new long[numBlocks];
+        for (int b = 0; b < numBlocks; b++) {
+            ids[b] = in.readLong();
+        }
+
+        Map<Long, Object[]> leaves = checkpoints.leavesById();
+        int numDirty = in.readInt();
+        for (int d = 0; d < numDirty; d++) {
+            long id = in.readLong();
+            int emptyPos = in.readInt();
+            E[] blk = (E[]) leaves.get(Long.valueOf(id));
+            if ((blk != null) && ((blk.length != (1 + blockSize)) || ColdBlockStore.isFrozen(blk))) {
+                checkpoints.release(blk);
+                blk = null;
+            }
+            if (blk == null) {
+                blk = newLeaf();
+                checkpoints.assign(blk, id);
+                leaves.put(Long.valueOf(id), blk);
+            } else {
+                if (coldStore != null) {
+                    coldStore.release(blk);
+                }
+                checkpoints.modify(blk);
+                if (blockHashes != null) {
+                    blockHashes.remove(blk);
+                }
+            }
+
+            blk[0] = (E) Integer.valueOf(emptyPos);
+            for (int s = 0; s < emptyPos; s++) {
+                blk[1 + s] = (E) in.readObject();
+            }
+            Arrays.fill(blk, 1 + emptyPos, blk.length, null);
+        }
+
+        E[][] newBlocks = (E[][]) new Object[numBlocks][];
+        Set<Object[]> kept = Collections.newSetFromMap(new IdentityHashMap<Object[], Boolean>());
+        int count = 0;
+        for (int b = 0; b < numBlocks; b++) {
+            E[] blk = (E[]) leaves.get(Long.valueOf(ids[b]));
+            if (blk == null) {
+                throw new StreamCorruptedException("Checkpoint refers to unknown block: " + ids[b]);
+            }
+            newBlocks[b] = blk;
+            kept.add(blk);
+            count += ((Integer) blk[0]).intValue();
+        }
+
+        if (count != newSize) {
+            throw new StreamCorruptedException("Checkpoint size (" + newSize + ") does not match its blocks (" + count + ")");
+        }
+
+        for (E[] blk : blocks) {
+            if (!kept.contains(blk)) {
+                releaseLeaf(blk);
+            }
+        }
+
+        blocks = newBlocks;
+        size = newSize;
+        checkpoints.markClean();
+        revision++;
+    }
+
+    /**
+     * compares this list with another BlockList by walking the blocks of both at once. Where blocks of the same length line up, and both have a cached
+     * hash, unequal hashes end the comparison without looking at the elements.
+     */
+    private boolean equalBlocks(BlockList<E> that) {
+        if (this.size != that.size) {
+            return false;
+        }
+
+        int thisBlk = 0;
+        int thisPos = 0;
+        int thatBlk = 0;
+        int thatPos = 0;
+        int remaining = size;
+        while (remaining > 0) {
+            E[] thisLeaf = blocks[thisBlk];
+            int thisEmptyPos = ((Integer) thisLeaf[0]).intValue();
+            if (thisPos == thisEmptyPos) {
+                thisBlk++;
+                thisPos = 0;
+                continue;
+            }
+
+            E[] thatLeaf = that.blocks[thatBlk];
+            int thatEmptyPos = ((Integer) thatLeaf[0]).intValue();
+            if (thatPos == thatEmptyPos) {
+                thatBlk++;
+                thatPos = 0;
+                continue;
+            }
+
+            if ((thisPos == 0) && (thatPos == 0) && (thisEmptyPos == thatEmptyPos) && (blockHashes != null) && (that.blockHashes != null)) {
+                Long thisHash = blockHashes.get(thisLeaf);
+                Long thatHash = that.blockHashes.get(thatLeaf);
+                if ((thisHash != null) && (thatHash != null) && !thisHash.equals(thatHash)) {
+                    return false;
+                }
+            }
+
+            thisLeaf = touch(thisBlk);
+            thatLeaf = that.touch(thatBlk);
+            int len = Math.min(thisEmptyPos - thisPos, thatEmptyPos - thatPos);
+            for (int s = 0; s < len; s++) {
+                if (!Objects.equals(thisLeaf[1 + thisPos + s], thatLeaf[1 + thatPos + s])) {
+                    return false;
+                }
+            }
+            thisPos += len;
+            thatPos += len;
+            remaining -= len;
+        }
+        return true;
+    }
+
+    /**
+     * @return the hash of a block's elements, computed as List.hashCode does but starting from 0, in the upper 32 bits, and 31 to the power of the number
+     *         of elements in the lower 32 bits
+     */
+    private long blockHash(int blkIndex) {
+        E[] blk = blocks[blkIndex];
+        Long cached = blockHashes.get(blk);
+        if (cached != null) {
+            return cached.longValue();
+        }
+
+        int emptyPos = ((Integer) blk[0]).intValue();
+        if (emptyPos == 0) {
+            return 1L;
+        }
+
+        blk = touch(blkIndex);
+        int hash = 0;
+        int power = 1;
+        for (int s = 0; s < emptyPos; s++) {
+            E e = blk[1 + s];
+            hash = (31 * hash) + ((e == null) ? 0 : e.hashCode());
+            power *= 31;
+        }
+
+        long blockHash = (((long) hash) << 32) | (power & 0xFFFFFFFFL);
+        blockHashes.put(blk, Long.valueOf(blockHash));
+        return blockHash;
+    }
+
+    private E[] newLeaf() {
+        return newLeaf(blockSize);
+    }
+
+    /**
+     * @return a leaf with room for at least capacity elements, or a full sized leaf from the pool if there is one
+     */
+    private E[] newLeaf(int capacity) {
+        E[] blk = null;
+        if ((leafPool != null) && (leafPool.getBlockSize() == blockSize)) {
+            blk = (E[]) leafPool.take();
+        }
+        if (blk == null) {
+            blk = (E[]) new Object[1 + capacity];
+        }
+        blk[0] = (E) Integer.valueOf(0);
+        return blk;
+    }
+
+    /**
+     * replaces a full leaf that is smaller than the block size with one twice as large, up to the block size. Only the first leaf of a list that fits in
+     * one block is ever smaller than the block size.
+     */
+    private E[] expandLeaf(int blkIndex) {
+        E[] blk = blocks[blkIndex];
+        int capacity = Math.min(blockSize, 2 * (blk.length - 1));
+        E[] expanded = Arrays.copyOf(blk, 1 + capacity);
+
+        if (coldStore != null) {
+            coldStore.release(blk);
+        }
+        if (checkpoints != null) {
+            checkpoints.replace(blk, expanded);
+        }
+        if (blockHashes != null) {
+            blockHashes.remove(blk);
+        }
+        blocks[blkIndex] = expanded;
+        return modify(blkIndex);
+    }
+
+    private void releaseLeaf(E[] blk) {
+        if (coldStore != null) {
+            coldStore.release(blk);
+        }
+        if (checkpoints != null) {
+            checkpoints.release(blk);
+        }
+        if (blockHashes != null) {
+            blockHashes.remove(blk);
+        }
+        if (leafPool != null) {
+            leafPool.give(blk);
+        }
+    }
+
+    private void sweepIfDue() {
+        if (coldStore != null) {
+            coldStore.maybeSweep(blocks);
+        }
+    }
+
+    /**
+     * called before the elements of the leaf at blkIndex are read
+     *
+     * @return the leaf, which is swapped for an inflated copy first if cold storage had frozen it
+     */
+    private E[] touch(int blkIndex) {
+        if (coldStore != null) {
+            return (E[]) coldStore.touch(blocks, blkIndex);
+        }
+        return blocks[blkIndex];
+    }
+
+    /**
+     * called before the elements of the leaf at blkIndex are written
+     *
+     * @return the leaf, which is swapped for an inflated copy first if cold storage had frozen it
+     */
+    private E[] modify(int blkIndex) {
+        E[] blk = (coldStore != null) ? (E[]) coldStore.modify(blocks, blkIndex) : blocks[blkIndex];
+        if (checkpoints != null) {
+            checkpoints.modify(blk);
+        }
+        if (blockHashes != null) {
+            blockHashes.remove(blk);
+        }
+        return blk;
+    }
+
+    /**
+     * called by cold storage when it swaps a leaf for its frozen stub, or back, so that the leaf's id and cached hash follow it. The elements are the
+     * same, so the leaf does not become dirty.
+     */
+    void leafSwapped(Object[] oldBlk, Object[] newBlk) {
+        if (checkpoints != null) {
+            checkpoints.move(oldBlk, newBlk);
+        }
+        if (blockHashes != null) {
+            Long hash = blockHashes.remove(oldBlk);
+            if (hash != null) {
+                blockHashes.put(newBlk, hash);
+            }
+        }
+    }
+
     private long findBlock(int index, boolean forAdd) {
         int offset = 0;
 
@@ -509,11 +1205,36 @@ public class BlockList<E> implements List<E>, Externalizable {
         return -1L;
     }
 
+    /**
+     * checks that every index is in bounds, and works out the order to visit them in
+     *
+     * @return null if the indices are already in ascending order, otherwise each index shifted up 32 bits, or'ed with its position in indices, sorted
+     */
+    private long[] sortOrder(int[] indices) {
+        long[] order = null;
+        for (int i = 0; i < indices.length; i++) {
+            int index = indices[i];
+            if ((index < 0) || (index >= size)) {
+                throw new IndexOutOfBoundsException("Index (" + index + ") is out of bounds [0 <= i < " + size + "]");
+            }
+            if ((order == null) && (i > 0) && (index < indices[i - 1])) {
+                order = new long[indices.length];
+            }
+        }
+
+        if (order != null) {
+            for (int i = 0; i < indices.length; i++) {
+                order[i] = (((long) indices[i]) << 32) | i;
+            }
+            Arrays.sort(order);
+        }
+        return order;
+    }
+
     private void grow() {
         E[][] newBlocks = (E[][]) new Object[blocks.length + 1][];
         System.arraycopy(blocks, 0, newBlocks, 0, blocks.length);
-        newBlocks[blocks.length] = (E[]) new Object[1 + blockSize];
-        newBlocks[blocks.length][0] = (E) Integer.valueOf(0);
+        newBlocks[blocks.length] = (blocks.length == 0) ? newLeaf(Math.min(SMALL_BLOCK_SIZE, blockSize)) : newLeaf();
         blocks = newBlocks;
     }
 
@@ -522,7 +1243,7 @@ public class BlockList<E> implements List<E>, Externalizable {
         System.arraycopy(blocks, 0, newBlocks, 0, blockIndex);
         System.arraycopy(blocks, blockIndex, newBlocks, blockIndex + 1, blocks.length - blockIndex);
 
-        newBlocks[blockIndex] = (E[]) new Object[1 + blockSize];
+        newBlocks[blockIndex] = newLeaf();
         int emptyPos = ((Integer) blocks[blockIndex][0]).intValue();
         if (blockOffset != 0) {
             System.arraycopy(blocks[blockIndex], 1 + 0, newBlocks[blockIndex], 1 + 0, blockOffset);
@@ -534,6 +1255,223 @@ public class BlockList<E> implements List<E>, Externalizable {
         blocks = newBlocks;
     }
 
+    /**
+     * inserts elements at index, filling the free space of the block they go in, and laying the rest into new full blocks that are added to the spine
+     * all at once. The part of that block after index, if any, is moved to a block of its own after the new ones.
+     */
+    private void insertElements(int index, Object[] src) {
+        int n = src.length;
+        if (n == 0) {
+            return;
+        }
+
+        long blockPtr = findBlock(index, true);
+        if ((blockPtr < 0) && (blocks.length == 0)) {
+            grow();
+            blockPtr = 0L;
+        }
+
+        int insertAt = blocks.length;
+        int pos = 0;
+        E[] tail = null;
+        if (blockPtr >= 0) {
+            int blkIndex = (int) (blockPtr >> 32);
+            int blkOffset = (int) blockPtr;
+            E[] blk = modify(blkIndex);
+            int emptyPos = ((Integer) blk[0]).intValue();
+            while (((blk.length - 1) < blockSize) && ((blk.length - 1) < (emptyPos + n))) {
+                blk = expandLeaf(blkIndex);
+            }
+
+            if ((emptyPos + n) <= (blk.length - 1)) {
+                System.arraycopy(blk, 1 + blkOffset, blk, 1 + blkOffset + n, emptyPos - blkOffset);
+                System.arraycopy(src, 0, blk, 1 + blkOffset, n);
+                blk[0] = (E) Integer.valueOf(emptyPos + n);
+                size += n;
+                revision++;
+                return;
+            }
+
+            if (blkOffset < emptyPos) {
+                tail = newLeaf();
+                System.arraycopy(blk, 1 + blkOffset, tail, 1, emptyPos - blkOffset);
+                tail[0] = (E) Integer.valueOf(emptyPos - blkOffset);
+                Arrays.fill(blk, 1 + blkOffset, 1 + emptyPos, null);
+            }
+            pos = Math.min(n, blockSize - blkOffset);
+            System.arraycopy(src, 0, blk, 1 + blkOffset, pos);
+            blk[0] = (E) Integer.valueOf(blkOffset + pos);
+            insertAt = blkIndex + 1;
+        }
+
+        int numNew = (((n - pos) + blockSize) - 1) / blockSize;
+        E[][] newBlocks = (E[][]) new Object[blocks.length + numNew + ((tail == null) ? 0 : 1)][];
+        System.arraycopy(blocks, 0, newBlocks, 0, insertAt);
+        int b = insertAt;
+        while (pos < n) {
+            E[] blk = newLeaf();
+            int len = Math.min(blockSize, n - pos);
+            System.arraycopy(src, pos, blk, 1, len);
+            blk[0] = (E) Integer.valueOf(len);
+            newBlocks[b++] = blk;
+            pos += len;
+        }
+        if (tail != null) {
+            newBlocks[b++] = tail;
+        }
+        System.arraycopy(blocks, insertAt, newBlocks, b, blocks.length - insertAt);
+
+        blocks = newBlocks;
+        size += n;
+        revision++;
+    }
+
+    /**
+     * removes the blocks from fromBlk, inclusive, to toBlk, exclusive, from the spine, releasing them
+     */
+    private void dropBlocks(int fromBlk, int toBlk) {
+        if (fromBlk == toBlk) {
+            return;
+        }
+
+        for (int b = fromBlk; b < toBlk; b++) {
+            releaseLeaf(blocks[b]);
+        }
+
+        int newLength = blocks.length - (toBlk - fromBlk);
+        if (newLength == 0) {
+            blocks = (E[][]) EMPTY_BLOCKS;
+            return;
+        }
+
+        E[][] newBlocks = (E[][]) new Object[newLength][];
+        System.arraycopy(blocks, 0, newBlocks, 0, fromBlk);
+        System.arraycopy(blocks, toBlk, newBlocks, fromBlk, blocks.length - toBlk);
+        blocks = newBlocks;
+    }
+
+    /**
+     * applies a batch of inserts and removes, sorted by the index of the element of this list they apply at. An insert goes before that element, and the
+     * inserts at an index come before a remove of the element there. One walk down the spine, reading only the block counts, finds the blocks the edits
+     * fall in, and sizes the new spine. Then each of those blocks is merged with its edits into as many full leaves as it needs, reusing its own leaf for the
+     * first of them when it can, and the blocks in between are copied over as they are.
+     *
+     * @param positions
+     *            the index of the element each edit applies at
+     * @param removes
+     *            whether each edit removes the element, rather than inserting before it
+     * @param elements
+     *            the element each insert adds
+     * @param count
+     *            the number of edits
+     */
+    void mergeEdits(int[] positions, boolean[] removes, Object[] elements, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        sweepIfDue();
+        if (blocks.length == 0) {
+            grow();
+        }
+
+        int[] editedBlocks = new int[count];
+        int[] editedStarts = new int[count];
+        int[] mergedCounts = new int[count];
+        int[] firstEdits = new int[count + 1];
+        int numEdited = 0;
+        int newLength = blocks.length;
+        int lastBlk = blocks.length - 1;
+        int blkStart = 0;
+        int e = 0;
+        for (int b = 0; e < count; b++) {
+            int blkCount = ((Integer) blocks[b][0]).intValue();
+            int blkEnd = blkStart + blkCount;
+            int first = e;
+            int merged = blkCount;
+            while ((e < count) && ((b == lastBlk) || (positions[e] < blkEnd))) {
+                merged += removes[e++] ? -1 : 1;
+            }
+            if (e > first) {
+                editedBlocks[numEdited] = b;
+                editedStarts[numEdited] = blkStart;
+                mergedCounts[numEdited] = merged;
+                firstEdits[numEdited++] = first;
+                newLength += (((merged + blockSize) - 1) / blockSize) - 1;
+            }
+            blkStart = blkEnd;
+        }
+        firstEdits[numEdited] = count;
+
+        E[][] newBlocks = (E[][]) ((newLength == 0) ? EMPTY_BLOCKS : new Object[newLength][]);
+        Object[] scratch = new Object[blockSize];
+        int copied = 0;
+        int nb = 0;
+        for (int d = 0; d < numEdited; d++) {
+            int b = editedBlocks[d];
+            System.arraycopy(blocks, copied, newBlocks, nb, b - copied);
+            nb += b - copied;
+            copied = b + 1;
+
+            E[] blk = modify(b);
+            int blkCount = ((Integer) blk[0]).intValue();
+            int merged = mergedCounts[d];
+            System.arraycopy(blk, 1, scratch, 0, blkCount);
+
+            E[] out = blk;
+            if ((merged == 0) || ((blk.length - 1) < Math.min(merged, blockSize))) {
+                releaseLeaf(blk);
+                out = (merged == 0) ? null : newLeaf(Math.min(merged, blockSize));
+            }
+
+            int fill = 0;
+            int src = 0;
+            int lastEdit = firstEdits[d + 1];
+            for (int k = firstEdits[d]; k <= lastEdit; k++) {
+                int at = (k < lastEdit) ? positions[k] - editedStarts[d] : blkCount;
+                while (src < at) {
+                    if (fill == (out.length - 1)) {
+                        out[0] = (E) Integer.valueOf(fill);
+                        newBlocks[nb++] = out;
+                        out = newLeaf();
+                        fill = 0;
+                    }
+                    int len = Math.min(at - src, (out.length - 1) - fill);
+                    System.arraycopy(scratch, src, out, 1 + fill, len);
+                    src += len;
+                    fill += len;
+                }
+
+                if (k < lastEdit) {
+                    if (removes[k]) {
+                        src++;
+                    } else {
+                        if (fill == (out.length - 1)) {
+                            out[0] = (E) Integer.valueOf(fill);
+                            newBlocks[nb++] = out;
+                            out = newLeaf();
+                            fill = 0;
+                        }
+                        out[1 + fill++] = (E) elements[k];
+                    }
+                }
+            }
+
+            if (out != null) {
+                if ((out == blk) && (fill < blkCount)) {
+                    Arrays.fill(blk, 1 + fill, 1 + blkCount, null);
+                }
+                out[0] = (E) Integer.valueOf(fill);
+                newBlocks[nb++] = out;
+            }
+            size += merged - blkCount;
+        }
+        System.arraycopy(blocks, copied, newBlocks, nb, blocks.length - copied);
+
+        blocks = newBlocks;
+        revision++;
+    }
+
     private class BlockListIterator implements Iterator<E> {
 
         protected int iteratorRevision = revision;
@@ -663,15 +1601,315 @@ public class BlockList<E> implements List<E>, Externalizable {
         }
     }
 
+    /**
+     * a position in the list, between two elements, that remembers the block and offset it refers to. Moving the cursor a short distance, and inserting,
+     * deleting, overwriting or reading at it, does not need to find the block again from an end of the list. A cursor stays valid across its own edits, but
+     * any other modification of the list invalidates it.
+     */
+    public class Cursor {
+
+        private int cursorRevision = revision;
+        private int pos;
+        private int blkIndex;
+        private int blkOffset;
+
+        Cursor(int index) {
+            pos = index;
+            if (blocks.length > 0) {
+                if (index < size) {
+                    long blockPtr = findBlock(index, false);
+                    blkIndex = (int) (blockPtr >> 32);
+                    blkOffset = (int) blockPtr;
+                } else {
+                    blkIndex = blocks.length - 1;
+                    blkOffset = ((Integer) blocks[blkIndex][0]).intValue();
+                    normalize();
+                }
+            }
+        }
+
+        public int position() {
+            checkRevision();
+            return pos;
+        }
+
+        /**
+         * moves the cursor forward, or backward if delta is negative
+         */
+        public void seek(int delta) {
+            checkRevision();
+            long newPos = (long) pos + delta;
+            if ((newPos < 0) || (newPos > size)) {
+                throw new IndexOutOfBoundsException("Invalid index: " + newPos);
+            }
+
+            move(delta);
+        }
+
+        /**
+         * inserts an element at the cursor, leaving the cursor after it
+         */
+        public void insert(E element) {
+            checkRevision();
+            if (blocks.length == 0) {
+                grow();
+            }
+
+            if ((blkOffset == blockSize) && (((Integer) blocks[blkIndex][0]).intValue() == blockSize)) {
+                if (blkIndex == (blocks.length - 1)) {
+                    grow();
+                }
+                blkIndex++;
+                blkOffset = 0;
+            }
+
+            BlockList.this.add(blkIndex, blkOffset, element);
+            pos++;
+            blkOffset++;
+            normalize();
+            cursorRevision = revision;
+        }
+
+        /**
+         * removes the count elements after the cursor
+         */
+        public void delete(int count) {
+            checkRevision();
+            if ((count < 0) || (count > (size - pos))) {
+                throw new IndexOutOfBoundsException("Invalid count: " + count);
+            }
+
+            if (count > 0) {
+                removeRange(blkIndex, blkOffset, count);
+                if (blocks.length == 0) {
+                    blkIndex = 0;
+                    blkOffset = 0;
+                } else if (blkIndex >= blocks.length) {
+                    blkIndex = blocks.length - 1;
+                    blkOffset = ((Integer) blocks[blkIndex][0]).intValue();
+                }
+                normalize();
+            }
+            cursorRevision = revision;
+        }
+
+        /**
+         * replaces the element after the cursor, and moves the cursor past it
+         *
+         * @return the element that was replaced
+         */
+        public E overwrite(E element) {
+            checkRevision();
+            if (pos >= size) {
+                throw new IndexOutOfBoundsException("Index (" + pos + ") is out of bounds [0 <= i < " + size + "]");
+            }
+
+            E[] blk = modify(blkIndex);
+            E oldValue = blk[1 + blkOffset];
+            blk[1 + blkOffset] = element;
+            move(1);
+            return oldValue;
+        }
+
+        /**
+         * returns the count elements after the cursor, and moves the cursor past them
+         */
+        public List<E> read(int count) {
+            checkRevision();
+            if ((count < 0) || (count > (size - pos))) {
+                throw new IndexOutOfBoundsException("Invalid count: " + count);
+            }
+
+            List<E> elements = new ArrayList<>(count);
+            int remaining = count;
+            while (remaining > 0) {
+                E[] blk = touch(blkIndex);
+                int len = Math.min(remaining, ((Integer) blk[0]).intValue() - blkOffset);
+                for (int s = 0; s < len; s++) {
+                    elements.add(blk[1 + blkOffset + s]);
+                }
+                remaining -= len;
+                pos += len;
+                blkOffset += len;
+                normalize();
+            }
+            return elements;
+        }
+
+        private void move(int delta) {
+            pos += delta;
+            int remaining = delta;
+            while (remaining > 0) {
+                int len = Math.min(remaining, ((Integer) blocks[blkIndex][0]).intValue() - blkOffset);
+                remaining -= len;
+                blkOffset += len;
+                normalize();
+            }
+
+            while (remaining < 0) {
+                if (blkOffset == 0) {
+                    blkIndex--;
+                    blkOffset = ((Integer) blocks[blkIndex][0]).intValue();
+                } else {
+                    int len = Math.min(-remaining, blkOffset);
+                    remaining += len;
+                    blkOffset -= len;
+                }
+            }
+            normalize();
+        }
+
+        /**
+         * moves past the end of a block to the start of the next block that has elements, if there is one
+         */
+        private void normalize() {
+            while ((blkIndex < (blocks.length - 1)) && (blkOffset >= ((Integer) blocks[blkIndex][0]).intValue())) {
+                int b = blkIndex + 1;
+                while ((b < blocks.length) && (((Integer) blocks[b][0]).intValue() == 0)) {
+                    b++;
+                }
+                if (b == blocks.length) {
+                    return;
+                }
+                blkIndex = b;
+                blkOffset = 0;
+            }
+        }
+
+        private void checkRevision() {
+            if (revision != cursorRevision) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * builds a BlockList by filling leaf arrays to capacity directly, without finding the block for each element, or reallocating the spine for each new
+     * block. Builders can be combined by concatenating their spines, without copying any elements, so separate runs of blocks can be built on separate
+     * threads and then joined. The methods line up with what is needed for a stream Collector, as in
+     *
+     * <pre>
+     * Collector.of(BlockList.Builder::new, BlockList.Builder::add, BlockList.Builder::combine, BlockList.Builder::build)
+     * </pre>
+     *
+     * A builder is not thread safe, and after build() it starts over empty.
+     */
+    public static class Builder<E> {
+
+        private final int blockSize;
+        private E[][] blocks;
+        private int numBlocks;
+        private int emptyPos;
+        private int size;
+
+        public Builder() {
+            this(DEFAULT_BLOCK_SIZE);
+        }
+
+        public Builder(int blkSize) {
+            blockSize = blkSize < MINIMUM_BLOCK_SIZE ? MINIMUM_BLOCK_SIZE : blkSize;
+            reset();
+        }
+
+        public Builder<E> add(E element) {
+            if (emptyPos == blockSize) {
+                startBlock();
+            }
+
+            blocks[numBlocks - 1][1 + emptyPos++] = element;
+            size++;
+            return this;
+        }
+
+        public Builder<E> addAll(Collection<? extends E> elements) {
+            Object[] src = elements.toArray();
+            int pos = 0;
+            while (pos < src.length) {
+                if (emptyPos == blockSize) {
+                    startBlock();
+                }
+
+                int len = Math.min(blockSize - emptyPos, src.length - pos);
+                System.arraycopy(src, pos, blocks[numBlocks - 1], 1 + emptyPos, len);
+                emptyPos += len;
+                pos += len;
+            }
+            size += src.length;
+            return this;
+        }
+
+        /**
+         * appends the blocks of another builder, of the same block size, to this one. The last block of this builder is left partially filled, and the
+         * other builder starts over empty.
+         *
+         * @return this builder
+         */
+        public Builder<E> combine(Builder<E> other) {
+            if (other.blockSize != blockSize) {
+                throw new IllegalArgumentException("Builder block size (" + other.blockSize + ") does not match block size (" + blockSize + ")");
+            }
+
+            if (other.numBlocks > 0) {
+                finishBlock();
+                other.finishBlock();
+
+                if ((numBlocks + other.numBlocks) > blocks.length) {
+                    blocks = Arrays.copyOf(blocks, Math.max(blocks.length * 2, numBlocks + other.numBlocks));
+                }
+                System.arraycopy(other.blocks, 0, blocks, numBlocks, other.numBlocks);
+                numBlocks += other.numBlocks;
+                emptyPos = other.emptyPos;
+                size += other.size;
+                other.reset();
+            }
+            return this;
+        }
+
+        public BlockList<E> build() {
+            finishBlock();
+            BlockList<E> list = new BlockList<>((numBlocks == blocks.length) ? blocks : Arrays.copyOf(blocks, numBlocks), blockSize, size);
+            reset();
+            return list;
+        }
+
+        private void startBlock() {
+            finishBlock();
+            if (numBlocks == blocks.length) {
+                blocks = Arrays.copyOf(blocks, Math.max(16, blocks.length * 2));
+            }
+            blocks[numBlocks++] = (E[]) new Object[1 + blockSize];
+            emptyPos = 0;
+        }
+
+        /**
+         * stores the 'next empty position' of the block being filled, in its leaf
+         */
+        private void finishBlock() {
+            if (numBlocks > 0) {
+                blocks[numBlocks - 1][0] = (E) Integer.valueOf(emptyPos);
+            }
+        }
+
+        private void reset() {
+            blocks = (E[][]) EMPTY_BLOCKS;
+            numBlocks = 0;
+            emptyPos = blockSize;
+            size = 0;
+        }
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeInt(blockSize);
         out.writeInt(size);
 
-        for (E[] blk : blocks) {
-            int emptyPos = ((Integer) blk[0]).intValue();
-            for (int s = 0; s < (1 + emptyPos); s++) {
-                out.writeObject(blk[s]);
+        for (int b = 0; b < blocks.length; b++) {
+            int emptyPos = ((Integer) blocks[b][0]).intValue();
+            if (emptyPos > 0) {
+                E[] blk = touch(b);
+                for (int s = 0; s < (1 + emptyPos); s++) {
+                    out.writeObject(blk[s]);
+                }
             }
         }
     }
@@ -682,26 +1920,21 @@ public class BlockList<E> implements List<E>, Externalizable {
         blockSize = in.readInt();
         size = in.readInt();
 
-        int numBlocks = (size + (blockSize - 1)) / blockSize;
-        if (numBlocks > DEFAULT_BLOCK_COUNT) {
-            blocks = (E[][]) new Object[numBlocks][];
-        } else {
-            blocks = (E[][]) new Object[DEFAULT_BLOCK_COUNT][];
-        }
-
-        for (int i = 0; i < numBlocks; i++) {
-            blocks[i] = (E[]) new Object[1 + blockSize];
-            blocks[i][0] = (E) Integer.valueOf(0);
-        }
-
-        for (int i = 0; i < numBlocks; i++) {
-            E[] blk = blocks[i];
-            blk[0] = (E) in.readObject();
-
-            int emptyPos = ((Integer) blk[0]).intValue();
-            for (int s = 0; s < emptyPos; s++) {
-                blk[1 + s] = (E) in.readObject();
+        List<E[]> leaves = new ArrayList<>((size + (blockSize - 1)) / blockSize);
+        int remaining = size;
+        while (remaining > 0) {
+            int emptyPos = ((Integer) in.readObject()).intValue();
+            if (emptyPos > 0) {
+                E[] blk = newLeaf();
+                blk[0] = (E) Integer.valueOf(emptyPos);
+                for (int s = 0; s < emptyPos; s++) {
+                    blk[1 + s] = (E) in.readObject();
+                }
+                leaves.add(blk);
+                remaining -= emptyPos;
             }
         }
+
+        blocks = leaves.toArray((E[][]) new Object[leaves.size()][]);
     }
 }
@@ -0,0 +1,354 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist;
+
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * a view of a BlockList that holds back inserts and removes by index, for bursts of edits at scattered positions. Pending changes are kept in a treap,
+ * ordered by the position in the BlockList they apply at, where each node counts the inserts and removes below it, so a read by index finds what is there
+ * in a walk down the tree. Setting an element of the BlockList itself is written straight through.
+ *
+ * The pending changes are applied by {@link #flush()}, which is called automatically once their number reaches the threshold, and before iterating. They are
+ * merged into the BlockList in one pass over its blocks, so only the blocks they fall in are rebuilt, and the spine is only copied once.
+ *
+ * The BlockList should not be modified directly while the view has changes pending. If it is, the view throws ConcurrentModificationException.
+ *
+ * This collection is not thread safe.
+ */
+public class BufferedBlockList<E> extends AbstractList<E> {
+
+    private final BlockList<E> base;
+    private final int threshold;
+    private Pending<E> root;
+    private int baseRevision;
+
+    private int foundEntry;
+    private int foundBase;
+    private Pending<E> foundPending;
+
+    BufferedBlockList(BlockList<E> list, int flushThreshold) {
+        if (flushThreshold < 1) {
+            throw new IllegalArgumentException("Invalid flush threshold: " + flushThreshold);
+        }
+        base = list;
+        threshold = flushThreshold;
+    }
+
+    @Override
+    public int size() {
+        return (root == null) ? base.size() : (base.size() + root.inserts) - root.removes;
+    }
+
+    @Override
+    public E get(int index) {
+        checkBase();
+        checkIndex(index, size());
+        locate(index);
+
+        return (foundPending != null) ? foundPending.element : base.get(foundBase);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkBase();
+        checkIndex(index, size());
+        locate(index);
+
+        if (foundPending != null) {
+            E oldValue = foundPending.element;
+            foundPending.element = element;
+            return oldValue;
+        }
+        return base.set(foundBase, element);
+    }
+
+    @Override
+    public boolean add(E element) {
+        add(size(), element);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkBase();
+        checkIndex(index, size() + 1);
+        locate(index);
+
+        addPending(new Pending<E>(foundBase, false, element));
+        flushIfDue();
+    }
+
+    @Override
+    public E remove(int index) {
+        checkBase();
+        checkIndex(index, size());
+        locate(index);
+
+        if (foundPending != null) {
+            root = delete(root, foundEntry);
+            return foundPending.element;
+        }
+
+        E e = base.get(foundBase);
+        addPending(new Pending<E>(foundBase, true, null));
+        flushIfDue();
+        return e;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        base.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        flush();
+        return base.iterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        flush();
+        return base.listIterator(index);
+    }
+
+    /**
+     * applies the pending inserts and removes to the BlockList
+     */
+    public void flush() {
+        if (root == null) {
+            return;
+        }
+        checkBase();
+
+        int count = count(root);
+        int[] positions = new int[count];
+        boolean[] removes = new boolean[count];
+        Object[] elements = new Object[count];
+        collect(root, positions, removes, elements, 0);
+
+        root = null;
+        base.mergeEdits(positions, removes, elements, count);
+    }
+
+    /**
+     * finds what is at index in this view, walking down the tree. If it is a pending insert, foundPending is set to it. Otherwise foundBase is the index of
+     * the element in the BlockList. Either way, foundEntry is the number of pending changes before it, which is where a new change at index goes, and
+     * foundBase is that change's position.
+     */
+    private void locate(int index) {
+        Pending<E> p = root;
+        int inserts = 0;
+        int removes = 0;
+        int entry = 0;
+        while (p != null) {
+            Pending<E> left = p.left;
+            int leftInserts = (left == null) ? 0 : left.inserts;
+            int leftRemoves = (left == null) ? 0 : left.removes;
+            int logical = ((p.basePos + inserts + leftInserts) - removes) - leftRemoves;
+            if (index < logical) {
+                p = left;
+            } else if ((index == logical) && !p.remove) {
+                found(entry + leftInserts + leftRemoves, p.basePos, p);
+                return;
+            } else {
+                inserts += leftInserts + (p.remove ? 0 : 1);
+                removes += leftRemoves + (p.remove ? 1 : 0);
+                entry += leftInserts + leftRemoves + 1;
+                p = p.right;
+            }
+        }
+
+        found(entry, (index - inserts) + removes, null);
+    }
+
+    private void found(int entry, int basePos, Pending<E> p) {
+        foundEntry = entry;
+        foundBase = basePos;
+        foundPending = p;
+    }
+
+    private void addPending(Pending<E> p) {
+        if (root == null) {
+            baseRevision = base.getRevision();
+        }
+        root = insert(root, foundEntry, p);
+    }
+
+    private void flushIfDue() {
+        if (count(root) >= threshold) {
+            flush();
+        }
+    }
+
+    private void checkBase() {
+        if ((root != null) && (base.getRevision() != baseRevision)) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if ((index < 0) || (index >= bound)) {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is out of bounds [0 <= i < " + bound + "]");
+        }
+    }
+
+    private static <E> int count(Pending<E> p) {
+        return (p == null) ? 0 : p.inserts + p.removes;
+    }
+
+    /**
+     * inserts p into the tree rooted at t, so that entry changes come before it
+     *
+     * @return the new root of the tree
+     */
+    private static <E> Pending<E> insert(Pending<E> t, int entry, Pending<E> p) {
+        if (t == null) {
+            return p;
+        }
+
+        int leftCount = count(t.left);
+        if (entry <= leftCount) {
+            t.left = insert(t.left, entry, p);
+            if (t.left.priority > t.priority) {
+                return rotateRight(t);
+            }
+        } else {
+            t.right = insert(t.right, entry - leftCount - 1, p);
+            if (t.right.priority > t.priority) {
+                return rotateLeft(t);
+            }
+        }
+        t.update();
+        return t;
+    }
+
+    /**
+     * removes the change that has entry changes before it from the tree rooted at t
+     *
+     * @return the new root of the tree
+     */
+    private static <E> Pending<E> delete(Pending<E> t, int entry) {
+        int leftCount = count(t.left);
+        if (entry < leftCount) {
+            t.left = delete(t.left, entry);
+        } else if (entry > leftCount) {
+            t.right = delete(t.right, entry - leftCount - 1);
+        } else {
+            return join(t.left, t.right);
+        }
+        t.update();
+        return t;
+    }
+
+    /**
+     * joins two trees, where every change in l comes before every change in r
+     */
+    private static <E> Pending<E> join(Pending<E> l, Pending<E> r) {
+        if (l == null) {
+            return r;
+        }
+        if (r == null) {
+            return l;
+        }
+
+        if (l.priority > r.priority) {
+            l.right = join(l.right, r);
+            l.update();
+            return l;
+        }
+        r.left = join(l, r.left);
+        r.update();
+        return r;
+    }
+
+    private static <E> Pending<E> rotateRight(Pending<E> t) {
+        Pending<E> l = t.left;
+        t.left = l.right;
+        t.update();
+        l.right = t;
+        l.update();
+        return l;
+    }
+
+    private static <E> Pending<E> rotateLeft(Pending<E> t) {
+        Pending<E> r = t.right;
+        t.right = r.left;
+        t.update();
+        r.left = t;
+        r.update();
+        return r;
+    }
+
+    /**
+     * copies the changes of the tree rooted at p, in order, into the arrays from pos on
+     *
+     * @return the position after the last change copied
+     */
+    private static <E> int collect(Pending<E> p, int[] positions, boolean[] removes, Object[] elements, int pos) {
+        if (p == null) {
+            return pos;
+        }
+
+        pos = collect(p.left, positions, removes, elements, pos);
+        positions[pos] = p.basePos;
+        removes[pos] = p.remove;
+        elements[pos] = p.element;
+        return collect(p.right, positions, removes, elements, pos + 1);
+    }
+
+    /**
+     * an insert before, or a remove of, the element of the BlockList at basePos, and the number of inserts and removes in the subtree below it
+     */
+    private static final class Pending<E> {
+        final int basePos;
+        final boolean remove;
+        final int priority;
+        E element;
+        Pending<E> left;
+        Pending<E> right;
+        int inserts;
+        int removes;
+
+        Pending(int pos, boolean isRemove, E e) {
+            basePos = pos;
+            remove = isRemove;
+            priority = ThreadLocalRandom.current().nextInt();
+            element = e;
+            update();
+        }
+
+        void update() {
+            inserts = remove ? 0 : 1;
+            removes = remove ? 1 : 0;
+            if (left != null) {
+                inserts += left.inserts;
+                removes += left.removes;
+            }
+            if (right != null) {
+                inserts += right.inserts;
+                removes += right.removes;
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+@SuppressWarnings("unchecked")
+/**
+ * the bookkeeping for the cold storage tier of a BlockList. Leaf arrays that have not been touched between two sweeps are encoded with the user's codec and
+ * deflated, and are swapped in the spine for a two slot stub leaf, holding the 'next empty position' at index 0, and the compressed bytes at index 1, so the
+ * spine can still be walked without inflating anything, and the full sized leaf array can be collected.
+ *
+ * Reading a frozen leaf inflates it into a new leaf array, which takes the stub's place in the spine, and remembers its compressed bytes in a small lru, so
+ * that it can be frozen again for free as long as it isn't written to. When the lru overflows, the eldest entry is frozen again. Writing to a leaf drops any
+ * compressed copy of it. Whenever a leaf is swapped for its stub, or back, the list is told, so that what it keeps per leaf follows the swap.
+ */
+class ColdBlockStore<E> {
+
+    private static final int SWEEP_CHECK_INTERVAL = 1024;
+
+    private final BlockList<E> owner;
+    private final ElementCodec<E> codec;
+    private final long idleMillis;
+    private final Map<Object[], Inflated> inflated;
+    private final Set<Object[]> touched;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private Object[][] spine;
+    private Object[] lastTouched;
+    private Object[] lastModified;
+    private long lastSweep;
+    private int opsSinceCheck;
+
+    ColdBlockStore(BlockList<E> list, ElementCodec<E> elementCodec, long idlePeriodMillis, final int maxInflatedBlocks) {
+        owner = list;
+        codec = elementCodec;
+        idleMillis = idlePeriodMillis;
+        inflated = new LinkedHashMap<Object[], Inflated>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 5006271358417006566L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object[], Inflated> eldest) {
+                if (size() <= maxInflatedBlocks) {
+                    return false;
+                }
+
+                refreeze(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        touched = new HashSet<>();
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        inflater = new Inflater();
+        lastSweep = System.currentTimeMillis();
+    }
+
+    /**
+     * called before the elements of a leaf are read. A frozen leaf is inflated and kept in the lru.
+     *
+     * @return the leaf now at blkIndex
+     */
+    Object[] touch(Object[][] blocks, int blkIndex) {
+        Object[] blk = blocks[blkIndex];
+        boolean frozen = isFrozen(blk);
+        if (!frozen && (blk == lastTouched)) {
+            return blk;
+        }
+
+        if (frozen) {
+            Frozen data = (Frozen) blk[1];
+            blk = thaw(blocks, blkIndex);
+            spine = blocks;
+            try {
+                inflated.put(blk, new Inflated(data, blkIndex));
+            } finally {
+                spine = null;
+            }
+        } else if (!inflated.isEmpty()) {
+            inflated.get(blk);
+        }
+        touched.add(blk);
+        lastTouched = blk;
+        return blk;
+    }
+
+    /**
+     * called before the elements of a leaf are written. Any compressed copy of the leaf is no longer valid.
+     *
+     * @return the leaf now at blkIndex
+     */
+    Object[] modify(Object[][] blocks, int blkIndex) {
+        Object[] blk = blocks[blkIndex];
+        boolean frozen = isFrozen(blk);
+        if (!frozen && (blk == lastModified)) {
+            return blk;
+        }
+
+        if (frozen) {
+            blk = thaw(blocks, blkIndex);
+        } else if (!inflated.isEmpty()) {
+            inflated.remove(blk);
+        }
+        touched.add(blk);
+        lastTouched = blk;
+        lastModified = blk;
+        return blk;
+    }
+
+    /**
+     * called when a leaf is dropped from the list, or its contents are replaced without going through the spine
+     */
+    void release(Object[] blk) {
+        inflated.remove(blk);
+        touched.remove(blk);
+        if (blk == lastTouched) {
+            lastTouched = null;
+        }
+        if (blk == lastModified) {
+            lastModified = null;
+        }
+    }
+
+    void clear() {
+        inflated.clear();
+        touched.clear();
+        lastTouched = null;
+        lastModified = null;
+    }
+
+    /**
+     * sweeps the spine, if an idle period has passed since the last sweep. The clock is only consulted every so many operations.
+     */
+    void maybeSweep(Object[][] blocks) {
+        if (++opsSinceCheck < SWEEP_CHECK_INTERVAL) {
+            return;
+        }
+        opsSinceCheck = 0;
+
+        if ((System.currentTimeMillis() - lastSweep) >= idleMillis) {
+            sweep(blocks);
+        }
+    }
+
+    /**
+     * freezes every non empty leaf that hasn't been touched since the last sweep
+     *
+     * @return the number of leaves frozen
+     */
+    int sweep(Object[][] blocks) {
+        int frozenCount = 0;
+        for (int b = 0; b < blocks.length; b++) {
+            Object[] blk = blocks[b];
+            if ((((Integer) blk[0]).intValue() > 0) && !isFrozen(blk) && !touched.contains(blk)) {
+                Inflated inflatedBlk = inflated.remove(blk);
+                freeze(blocks, b, (inflatedBlk == null) ? new Frozen(compress(blk), blk.length - 1) : inflatedBlk.frozen);
+                frozenCount++;
+            }
+        }
+
+        touched.clear();
+        lastTouched = null;
+        lastModified = null;
+        lastSweep = System.currentTimeMillis();
+        opsSinceCheck = 0;
+        return frozenCount;
+    }
+
+    /**
+     * inflates every frozen leaf, and releases the native resources of the store
+     */
+    void close(Object[][] blocks) {
+        for (int b = 0; b < blocks.length; b++) {
+            if (isFrozen(blocks[b])) {
+                thaw(blocks, b);
+            }
+        }
+        clear();
+        deflater.end();
+        inflater.end();
+    }
+
+    static boolean isFrozen(Object[] blk) {
+        return (blk.length > 1) && (blk[1] instanceof Frozen);
+    }
+
+    /**
+     * freezes a leaf that has been pushed out of the lru, finding it in the spine being touched, where it usually still is at the index it was inflated at
+     */
+    private void refreeze(Object[] blk, Inflated inflatedBlk) {
+        int b = inflatedBlk.blkIndex;
+        if ((b >= spine.length) || (spine[b] != blk)) {
+            b = spine.length - 1;
+            while ((b >= 0) && (spine[b] != blk)) {
+                b--;
+            }
+            if (b < 0) {
+                return;
+            }
+        }
+
+        touched.remove(blk);
+        if (blk == lastTouched) {
+            lastTouched = null;
+        }
+        freeze(spine, b, inflatedBlk.frozen);
+    }
+
+    private void freeze(Object[][] blocks, int blkIndex, Frozen data) {
+        Object[] blk = blocks[blkIndex];
+        Object[] stub = new Object[] { blk[0], data };
+        blocks[blkIndex] = stub;
+        owner.leafSwapped(blk, stub);
+    }
+
+    private Object[] thaw(Object[][] blocks, int blkIndex) {
+        Object[] stub = blocks[blkIndex];
+        Frozen data = (Frozen) stub[1];
+        int emptyPos = ((Integer) stub[0]).intValue();
+        Object[] blk = new Object[1 + data.capacity];
+        blk[0] = stub[0];
+
+        inflater.reset();
+        try (DataInputStream dis = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data.data), inflater))) {
+            for (int s = 0; s < emptyPos; s++) {
+                blk[1 + s] = dis.readBoolean() ? codec.read(dis) : null;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to inflate cold block", e);
+        }
+
+        blocks[blkIndex] = blk;
+        owner.leafSwapped(stub, blk);
+        return blk;
+    }
+
+    private byte[] compress(Object[] blk) {
+        int emptyPos = ((Integer) blk[0]).intValue();
+
+        deflater.reset();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(new DeflaterOutputStream(baos, deflater))) {
+            for (int s = 0; s < emptyPos; s++) {
+                E e = (E) blk[1 + s];
+                dos.writeBoolean(e != null);
+                if (e != null) {
+                    codec.write(e, dos);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to compress cold block", e);
+        }
+        return baos.toByteArray();
+    }
+
+    private static final class Frozen {
+        final byte[] data;
+        final int capacity;
+
+        Frozen(byte[] compressed, int leafCapacity) {
+            data = compressed;
+            capacity = leafCapacity;
+        }
+    }
+
+    /**
+     * the compressed form of a leaf that was inflated to be read, and where in the spine it was inflated
+     */
+    private static final class Inflated {
+        final Frozen frozen;
+        final int blkIndex;
+
+        Inflated(Frozen frozenBlk, int index) {
+            frozen = frozenBlk;
+            blkIndex = index;
+        }
+    }
+}
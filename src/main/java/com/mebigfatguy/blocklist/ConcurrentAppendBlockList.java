@@ -0,0 +1,169 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+@SuppressWarnings("unchecked")
+/**
+ * an append only, block based list that many threads can add to, read from and set elements of at once, without locking. Elements can only be added to
+ * the end of the list, so add(int, E), remove and clear throw UnsupportedOperationException.
+ *
+ * Each thread that adds an element reserves the next index with a compare and set, and writes the element into a fixed size leaf. A new leaf is installed
+ * in the spine with a compare and set by whichever thread needs it first. The spine is split into buckets that double in size, so it never has to be copied
+ * as the list grows. The leaf for an index is installed before the index is reserved, so nothing that can fail, like running out of memory, happens between
+ * reserving an index and writing it.
+ *
+ * size() only counts the elements up to the first index that has been reserved, but not yet written, so a reader never sees an element that is not there
+ * yet. An element added by one thread may not be counted until the threads that reserved the indices before it have written theirs. A thread that dies
+ * abruptly, say from Thread.stop, between reserving an index and writing it, leaves that index reserved for good, and nothing added after it is ever
+ * counted.
+ */
+public class ConcurrentAppendBlockList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int NUM_BUCKETS = 31;
+    private static final Object NULL = new Object();
+
+    private final int blockSize;
+    private final AtomicReferenceArray<AtomicReferenceArray<AtomicReferenceArray<Object>>> spine;
+    private final AtomicInteger reserved;
+    private final AtomicInteger published;
+
+    public ConcurrentAppendBlockList() {
+        this(BlockList.DEFAULT_BLOCK_SIZE);
+    }
+
+    public ConcurrentAppendBlockList(int blkSize) {
+        blockSize = blkSize < BlockList.MINIMUM_BLOCK_SIZE ? BlockList.MINIMUM_BLOCK_SIZE : blkSize;
+        spine = new AtomicReferenceArray<>(NUM_BUCKETS);
+        reserved = new AtomicInteger(0);
+        published = new AtomicInteger(0);
+    }
+
+    @Override
+    public int size() {
+        return published.get();
+    }
+
+    @Override
+    public boolean add(E element) {
+        int index;
+        AtomicReferenceArray<Object> leaf;
+        do {
+            index = reserved.get();
+            if (index == Integer.MAX_VALUE) {
+                throw new IllegalStateException("List is full");
+            }
+            leaf = leaf(index / blockSize, true);
+        } while (!reserved.compareAndSet(index, index + 1));
+
+        leaf.set(index % blockSize, (element == null) ? NULL : element);
+        publish();
+        return true;
+    }
+
+    @Override
+    public E get(int index) {
+        checkIndex(index);
+
+        Object e = leaf(index / blockSize, false).get(index % blockSize);
+        return (e == NULL) ? null : (E) e;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkIndex(index);
+
+        Object e = leaf(index / blockSize, false).getAndSet(index % blockSize, (element == null) ? NULL : element);
+        return (e == NULL) ? null : (E) e;
+    }
+
+    /**
+     * always throws, even if the list is empty, as elements can't be removed from this list
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("ConcurrentAppendBlockList can not be cleared");
+    }
+
+    /**
+     * @return a BlockList holding the elements of this list that had been counted by size() when this was called
+     */
+    public BlockList<E> toBlockList() {
+        int sz = published.get();
+        BlockList.Builder<E> builder = new BlockList.Builder<>(blockSize);
+        for (int i = 0; i < sz; i++) {
+            Object e = leaf(i / blockSize, false).get(i % blockSize);
+            builder.add((e == NULL) ? null : (E) e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * moves the published size past every index that has been written, helping along whichever threads wrote them
+     */
+    private void publish() {
+        int pos = published.get();
+        while (pos < reserved.get()) {
+            AtomicReferenceArray<Object> leaf = leaf(pos / blockSize, false);
+            if ((leaf == null) || (leaf.get(pos % blockSize) == null)) {
+                return;
+            }
+            published.compareAndSet(pos, pos + 1);
+            pos = published.get();
+        }
+    }
+
+    /**
+     * finds the leaf holding the elements from leafIndex * blockSize on. Bucket b of the spine holds 2^b leaves, starting with leaf 2^b - 1.
+     *
+     * @param create
+     *            whether to install the leaf, and its bucket, if they aren't there yet
+     * @return the leaf, or null if it isn't there, and create is false
+     */
+    private AtomicReferenceArray<Object> leaf(int leafIndex, boolean create) {
+        int n = leafIndex + 1;
+        int bucketIndex = 31 - Integer.numberOfLeadingZeros(n);
+        int slot = n - (1 << bucketIndex);
+
+        AtomicReferenceArray<AtomicReferenceArray<Object>> bucket = spine.get(bucketIndex);
+        if (bucket == null) {
+            if (!create) {
+                return null;
+            }
+            spine.compareAndSet(bucketIndex, null, new AtomicReferenceArray<AtomicReferenceArray<Object>>(1 << bucketIndex));
+            bucket = spine.get(bucketIndex);
+        }
+
+        AtomicReferenceArray<Object> leaf = bucket.get(slot);
+        if ((leaf == null) && create) {
+            bucket.compareAndSet(slot, null, new AtomicReferenceArray<Object>(blockSize));
+            leaf = bucket.get(slot);
+        }
+        return leaf;
+    }
+
+    private void checkIndex(int index) {
+        int sz = published.get();
+        if ((index < 0) || (index >= sz)) {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is out of bounds [0 <= i < " + sz + "]");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * the bookkeeping for BlockList checkpoints. Each leaf array that has been written to a checkpoint is given a stable id, and leaves that are written to
+ * after that are remembered as dirty, so that the next checkpoint only needs to hold those. Leaves that don't have an id yet are new, and so are dirty as
+ * well.
+ */
+class DirtyBlockTracker {
+
+    private final Map<Object[], Long> ids;
+    private final Set<Object[]> dirty;
+    private Object[] lastModified;
+    private long nextId;
+
+    DirtyBlockTracker() {
+        ids = new IdentityHashMap<>();
+        dirty = Collections.newSetFromMap(new IdentityHashMap<Object[], Boolean>());
+        nextId = 0;
+    }
+
+    void modify(Object[] blk) {
+        if (blk != lastModified) {
+            dirty.add(blk);
+            lastModified = blk;
+        }
+    }
+
+    void release(Object[] blk) {
+        ids.remove(blk);
+        dirty.remove(blk);
+        if (blk == lastModified) {
+            lastModified = null;
+        }
+    }
+
+    /**
+     * moves the id of a leaf that has been reallocated to its replacement, which is dirty
+     */
+    void replace(Object[] oldBlk, Object[] newBlk) {
+        Long id = ids.remove(oldBlk);
+        if (id != null) {
+            ids.put(newBlk, id);
+        }
+        dirty.remove(oldBlk);
+        dirty.add(newBlk);
+        lastModified = newBlk;
+    }
+
+    /**
+     * moves the id of a leaf to another leaf holding the same elements, which is only dirty if the original was
+     */
+    void move(Object[] oldBlk, Object[] newBlk) {
+        Long id = ids.remove(oldBlk);
+        if (id != null) {
+            ids.put(newBlk, id);
+        }
+        if (dirty.remove(oldBlk)) {
+            dirty.add(newBlk);
+        }
+        if (oldBlk == lastModified) {
+            lastModified = newBlk;
+        }
+    }
+
+    void clear() {
+        ids.clear();
+        dirty.clear();
+        lastModified = null;
+    }
+
+    boolean isDirty(Object[] blk) {
+        return dirty.contains(blk) || !ids.containsKey(blk);
+    }
+
+    /**
+     * @return the id of the leaf, giving it one if it doesn't have one yet
+     */
+    long idOf(Object[] blk) {
+        Long id = ids.get(blk);
+        if (id == null) {
+            id = Long.valueOf(nextId++);
+            ids.put(blk, id);
+        }
+        return id.longValue();
+    }
+
+    void assign(Object[] blk, long id) {
+        ids.put(blk, Long.valueOf(id));
+        if (id >= nextId) {
+            nextId = id + 1;
+        }
+    }
+
+    Map<Long, Object[]> leavesById() {
+        Map<Long, Object[]> leaves = new HashMap<>(ids.size() * 2);
+        for (Map.Entry<Object[], Long> entry : ids.entrySet()) {
+            leaves.put(entry.getValue(), entry.getKey());
+        }
+        return leaves;
+    }
+
+    void markClean() {
+        dirty.clear();
+        lastModified = null;
+    }
+}
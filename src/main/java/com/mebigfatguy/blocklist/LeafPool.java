@@ -0,0 +1,84 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist;
+
+import java.util.Arrays;
+
+/**
+ * a bounded pool of leaf arrays for BlockLists of one block size. Lists created with a pool draw new leaves from it, and give leaves back to it when they
+ * are cleared or compacted, instead of leaving them for the garbage collector. Leaves are nulled out before they are pooled, so they never keep elements
+ * reachable.
+ *
+ * A pool may be used by one list, or shared by many. Taking and giving are synchronized, so lists used on different threads may share a pool, even though
+ * each list itself is not thread safe.
+ */
+public class LeafPool {
+
+    private final int blockSize;
+    private final Object[][] leaves;
+    private int count;
+
+    public LeafPool(int blkSize, int maxLeaves) {
+        if (blkSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blkSize);
+        }
+        if (maxLeaves < 0) {
+            throw new IllegalArgumentException("Invalid maximum number of leaves: " + maxLeaves);
+        }
+
+        blockSize = blkSize;
+        leaves = new Object[maxLeaves][];
+        count = 0;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return a nulled out leaf array, or null if the pool is empty
+     */
+    synchronized Object[] take() {
+        if (count == 0) {
+            return null;
+        }
+
+        Object[] leaf = leaves[--count];
+        leaves[count] = null;
+        return leaf;
+    }
+
+    /**
+     * nulls out a leaf array, and pools it if there is room, and it is of the right size
+     */
+    void give(Object[] leaf) {
+        if (leaf.length != (1 + blockSize)) {
+            return;
+        }
+
+        Arrays.fill(leaf, null);
+        synchronized (this) {
+            if (count < leaves.length) {
+                leaves[count++] = leaf;
+            }
+        }
+    }
+}
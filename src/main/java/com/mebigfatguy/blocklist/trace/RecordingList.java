@@ -0,0 +1,332 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+
+/**
+ * a List that passes every call on to another list, typically a BlockList, while recording the type, index and bulk size of each operation to a trace, so
+ * that the access pattern can be replayed later by {@link TraceReplayer}. The elements themselves are not recorded.
+ *
+ * Searches are recorded by the index they found. Iterations are recorded by where they started, and how many elements they visited. Each iterator keeps
+ * track of its own iteration, and writes it once it runs out of elements, or it is used for anything but next, so iterators that are used at the same
+ * time are recorded separately. Iterations that are still open, like those of iterators that were abandoned part way, are written by {@link #close()}.
+ * containsAll, removeAll, retainAll and subList are passed on, but not recorded.
+ *
+ * If writing the trace fails, recording stops, the list keeps working, and the failure is thrown from {@link #close()}.
+ */
+public class RecordingList<E> implements List<E>, Closeable {
+
+    private final List<E> list;
+    private final DataOutputStream out;
+    private final Set<RecordingListIterator> openIterations;
+    private IOException failure;
+
+    public RecordingList(List<E> delegate, OutputStream traceStream) throws IOException {
+        list = delegate;
+        out = new DataOutputStream(new BufferedOutputStream(traceStream));
+        out.writeInt(TraceOp.MAGIC);
+        out.writeByte(TraceOp.VERSION);
+        openIterations = new LinkedHashSet<>();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (RecordingListIterator iterator : new ArrayList<RecordingListIterator>(openIterations)) {
+            iterator.endIteration();
+        }
+        out.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return list.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int index = list.indexOf(o);
+        record(TraceOp.SEARCH, index, 0);
+        return index >= 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public Object[] toArray() {
+        record(TraceOp.ITERATE, 0, list.size());
+        return list.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        record(TraceOp.ITERATE, 0, list.size());
+        return list.toArray(a);
+    }
+
+    @Override
+    public boolean add(E e) {
+        record(TraceOp.ADD, 0, 0);
+        return list.add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = list.indexOf(o);
+        record(TraceOp.SEARCH, index, 0);
+        if (index < 0) {
+            return false;
+        }
+
+        record(TraceOp.REMOVE_INDEX, index, 0);
+        list.remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return list.containsAll(c);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        record(TraceOp.ADD_ALL, 0, c.size());
+        return list.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+        record(TraceOp.ADD_ALL_INDEX, index, c.size());
+        return list.addAll(index, c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return list.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return list.retainAll(c);
+    }
+
+    @Override
+    public void clear() {
+        record(TraceOp.CLEAR, 0, 0);
+        list.clear();
+    }
+
+    @Override
+    public E get(int index) {
+        record(TraceOp.GET, index, 0);
+        return list.get(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        record(TraceOp.SET, index, 0);
+        return list.set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        record(TraceOp.ADD_INDEX, index, 0);
+        list.add(index, element);
+    }
+
+    @Override
+    public E remove(int index) {
+        record(TraceOp.REMOVE_INDEX, index, 0);
+        return list.remove(index);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        int index = list.indexOf(o);
+        record(TraceOp.SEARCH, index, 0);
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        int index = list.lastIndexOf(o);
+        record(TraceOp.SEARCH_LAST, index, 0);
+        return index;
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        return new RecordingListIterator(list.listIterator(index));
+    }
+
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        return list.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return list.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return list.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return list.toString();
+    }
+
+    private void record(TraceOp op, int index, int bulk) {
+        if (failure != null) {
+            return;
+        }
+
+        try {
+            op.write(out);
+            if (op.hasIndex) {
+                TraceOp.writeIndex(out, index);
+            }
+            if (op.hasBulk) {
+                TraceOp.writeVarInt(out, bulk);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private class RecordingListIterator implements ListIterator<E> {
+
+        private final ListIterator<E> it;
+        private int lastReturned = -1;
+        private int iterationStart = -1;
+        private int iterationCount;
+
+        RecordingListIterator(ListIterator<E> listIterator) {
+            it = listIterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = it.hasNext();
+            if (!hasNext) {
+                endIteration();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public E next() {
+            int index = it.nextIndex();
+            E e = it.next();
+            if (iterationStart < 0) {
+                iterationStart = index;
+                iterationCount = 0;
+                openIterations.add(this);
+            }
+            iterationCount++;
+            lastReturned = index;
+            return e;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return it.hasPrevious();
+        }
+
+        @Override
+        public E previous() {
+            endIteration();
+            lastReturned = it.previousIndex();
+            record(TraceOp.GET, lastReturned, 0);
+            return it.previous();
+        }
+
+        @Override
+        public int nextIndex() {
+            return it.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+            return it.previousIndex();
+        }
+
+        @Override
+        public void remove() {
+            it.remove();
+            endIteration();
+            record(TraceOp.REMOVE_INDEX, lastReturned, 0);
+            lastReturned = -1;
+        }
+
+        @Override
+        public void set(E e) {
+            it.set(e);
+            endIteration();
+            record(TraceOp.SET, lastReturned, 0);
+        }
+
+        @Override
+        public void add(E e) {
+            endIteration();
+            record(TraceOp.ADD_INDEX, it.nextIndex(), 0);
+            it.add(e);
+            lastReturned = -1;
+        }
+
+        /**
+         * writes out this iterator's iteration in progress, if there is one
+         */
+        private void endIteration() {
+            if (iterationStart >= 0) {
+                record(TraceOp.ITERATE, iterationStart, iterationCount);
+                iterationStart = -1;
+                openIterations.remove(this);
+            }
+        }
+    }
+}
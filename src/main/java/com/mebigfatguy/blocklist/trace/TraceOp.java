@@ -0,0 +1,94 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * the operations held in a trace file. A trace file starts with MAGIC and VERSION, followed by one record per operation. Each record is the code of the
+ * operation as a byte, followed by its index and/or bulk size, as needed, each written as an unsigned variable length int. Indices of -1 are written as 0,
+ * and all others are written as index + 1.
+ */
+enum TraceOp {
+    ADD(false, false),
+    ADD_INDEX(true, false),
+    ADD_ALL(false, true),
+    ADD_ALL_INDEX(true, true),
+    GET(true, false),
+    SET(true, false),
+    REMOVE_INDEX(true, false),
+    SEARCH(true, false),
+    SEARCH_LAST(true, false),
+    ITERATE(true, true),
+    CLEAR(false, false);
+
+    static final int MAGIC = 0x424C5452;
+    static final int VERSION = 1;
+
+    private static final TraceOp[] OPS = values();
+
+    final boolean hasIndex;
+    final boolean hasBulk;
+
+    TraceOp(boolean index, boolean bulk) {
+        hasIndex = index;
+        hasBulk = bulk;
+    }
+
+    static TraceOp read(DataInput in) throws IOException {
+        int code = in.readUnsignedByte();
+        if (code >= OPS.length) {
+            throw new StreamCorruptedException("Unknown trace operation: " + code);
+        }
+        return OPS[code];
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeByte(ordinal());
+    }
+
+    static int readIndex(DataInput in) throws IOException {
+        return readVarInt(in) - 1;
+    }
+
+    static void writeIndex(DataOutput out, int index) throws IOException {
+        writeVarInt(out, index + 1);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * BlockList an alternative java.util.List
+ * Copyright 2011-2019 MeBigFatGuy.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mebigfatguy.blocklist.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+
+import com.mebigfatguy.blocklist.BlockList;
+
+/**
+ * replays a trace written by {@link RecordingList} against a list, timing each operation. Elements are stand in objects, and indices are clamped to the
+ * size of the list, so a trace can be replayed against any list implementation, even if some of its operations weren't recorded.
+ *
+ * Run from the command line as
+ *
+ * <pre>
+ * java com.mebigfatguy.blocklist.trace.TraceReplayer trace-file [block-size...]
+ * </pre>
+ *
+ * to compare BlockLists of each block size given, 64, 256 and 1024 by default, with ArrayList and LinkedList.
+ */
+public class TraceReplayer {
+
+    private static final int MAX_DISTINCT_VALUES = 1 << 20;
+    private static final int[] DEFAULT_BLOCK_SIZES = { 64, 256, 1024 };
+    private static final Object MISSING = new Object();
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+    private final TraceOp[] ops;
+    private final int[] indices;
+    private final int[] bulks;
+    private final Object[] values;
+    private final List<Object> bulkValues;
+
+    public TraceReplayer(InputStream traceStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(traceStream));
+        if (in.readInt() != TraceOp.MAGIC) {
+            throw new StreamCorruptedException("Not a BlockList trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version != TraceOp.VERSION) {
+            throw new StreamCorruptedException("Unsupported trace version: " + version);
+        }
+
+        List<TraceOp> opList = new ArrayList<>();
+        int[] indexList = new int[1024];
+        int[] bulkList = new int[1024];
+        int numValues = 0;
+        int maxBulk = 0;
+        try {
+            while (true) {
+                TraceOp op = TraceOp.read(in);
+                int n = opList.size();
+                if (n == indexList.length) {
+                    indexList = Arrays.copyOf(indexList, n * 2);
+                    bulkList = Arrays.copyOf(bulkList, n * 2);
+                }
+                indexList[n] = op.hasIndex ? TraceOp.readIndex(in) : 0;
+                bulkList[n] = op.hasBulk ? TraceOp.readVarInt(in) : 0;
+                opList.add(op);
+
+                if ((op == TraceOp.ADD) || (op == TraceOp.ADD_INDEX) || (op == TraceOp.SET)) {
+                    numValues++;
+                } else if ((op == TraceOp.ADD_ALL) || (op == TraceOp.ADD_ALL_INDEX)) {
+                    maxBulk = Math.max(maxBulk, bulkList[n]);
+                }
+            }
+        } catch (EOFException e) {
+            // end of trace
+        }
+
+        ops = opList.toArray(new TraceOp[opList.size()]);
+        indices = Arrays.copyOf(indexList, ops.length);
+        bulks = Arrays.copyOf(bulkList, ops.length);
+
+        values = new Object[Math.max(1, Math.min(numValues, MAX_DISTINCT_VALUES))];
+        for (int v = 0; v < values.length; v++) {
+            values[v] = new Object();
+        }
+        bulkValues = new ArrayList<>(maxBulk);
+        for (int v = 0; v < maxBulk; v++) {
+            bulkValues.add(new Object());
+        }
+    }
+
+    public int getOperationCount() {
+        return ops.length;
+    }
+
+    /**
+     * runs the trace against the list, which should be empty
+     *
+     * @param name
+     *            the name to report the results under
+     * @param list
+     *            the list to run the trace against
+     * @return the timings of the run
+     */
+    public Result replay(String name, List<Object> list) {
+        long[] latencies = new long[ops.length];
+        int nextValue = 0;
+
+        long startAllocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ops.length; i++) {
+            int index = indices[i];
+            int size = list.size();
+            Object key = null;
+            if ((ops[i] == TraceOp.SEARCH) || (ops[i] == TraceOp.SEARCH_LAST)) {
+                key = ((index < 0) || (size == 0)) ? MISSING : list.get(clamp(index, size));
+            }
+            long opStart = System.nanoTime();
+            switch (ops[i]) {
+                case ADD:
+                    list.add(values[nextValue++ % values.length]);
+                break;
+
+                case ADD_INDEX:
+                    list.add(clamp(index, size + 1), values[nextValue++ % values.length]);
+                break;
+
+                case ADD_ALL:
+                    list.addAll(bulkValues.subList(0, bulks[i]));
+                break;
+
+                case ADD_ALL_INDEX:
+                    list.addAll(clamp(index, size + 1), bulkValues.subList(0, bulks[i]));
+                break;
+
+                case GET:
+                    if (size > 0) {
+                        list.get(clamp(index, size));
+                    }
+                break;
+
+                case SET:
+                    if (size > 0) {
+                        list.set(clamp(index, size), values[nextValue++ % values.length]);
+                    }
+                break;
+
+                case REMOVE_INDEX:
+                    if (size > 0) {
+                        list.remove(clamp(index, size));
+                    }
+                break;
+
+                case SEARCH:
+                    list.indexOf(key);
+                break;
+
+                case SEARCH_LAST:
+                    list.lastIndexOf(key);
+                break;
+
+                case ITERATE:
+                    ListIterator<Object> it = list.listIterator(clamp(index, size + 1));
+                    for (int n = bulks[i]; (n > 0) && it.hasNext(); n--) {
+                        it.next();
+                    }
+                break;
+
+                case CLEAR:
+                    list.clear();
+                break;
+            }
+            latencies[i] = System.nanoTime() - opStart;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - startAllocated;
+
+        return new Result(name, ops.length, elapsed, latencies, (startAllocated < 0) ? -1 : allocated);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: TraceReplayer trace-file [block-size...]");
+            System.exit(1);
+        }
+
+        TraceReplayer replayer;
+        try (InputStream is = new FileInputStream(args[0])) {
+            replayer = new TraceReplayer(is);
+        }
+
+        int[] blockSizes = DEFAULT_BLOCK_SIZES;
+        if (args.length > 1) {
+            blockSizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                blockSizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(replayer.getOperationCount() + " operations");
+        System.out.println(Result.HEADER);
+        for (int blockSize : blockSizes) {
+            replayer.replay("warmup", new BlockList<>(BlockList.DEFAULT_BLOCK_COUNT, blockSize));
+            System.out.println(replayer.replay("BlockList(" + blockSize + ")", new BlockList<>(BlockList.DEFAULT_BLOCK_COUNT, blockSize)));
+        }
+        replayer.replay("warmup", new ArrayList<>());
+        System.out.println(replayer.replay("ArrayList", new ArrayList<>()));
+        replayer.replay("warmup", new LinkedList<>());
+        System.out.println(replayer.replay("LinkedList", new LinkedList<>()));
+    }
+
+    private static int clamp(int index, int bound) {
+        return (index < bound) ? Math.max(index, 0) : bound - 1;
+    }
+
+    /**
+     * @return the bytes allocated by this thread so far, or -1 if the jvm can't tell
+     */
+    private static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return -1;
+        }
+
+        try {
+            return ((Long) ALLOCATED_BYTES.invoke(ManagementFactory.getThreadMXBean(), Long.valueOf(Thread.currentThread().getId()))).longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * finds the hotspot specific ThreadMXBean.getThreadAllocatedBytes by reflection, so as not to depend on com.sun.management at compile time
+     */
+    private static Method allocatedBytesMethod() {
+        try {
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!beanClass.isInstance(bean)) {
+                return null;
+            }
+            return beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * the throughput, latency percentiles and allocation of one replay
+     */
+    public static class Result {
+
+        static final String HEADER = String.format("%-20s %12s %10s %10s %10s %10s %12s", "list", "ops/sec", "p50 ns", "p90 ns", "p99 ns", "max ns",
+                "bytes/op");
+
+        private final String name;
+        private final double opsPerSecond;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+        private final double bytesPerOp;
+
+        Result(String listName, int count, long elapsedNanos, long[] latencies, long allocated) {
+            name = listName;
+            opsPerSecond = (elapsedNanos == 0) ? 0 : (count * 1000000000.0) / elapsedNanos;
+            Arrays.sort(latencies);
+            p50 = percentile(latencies, 50);
+            p90 = percentile(latencies, 90);
+            p99 = percentile(latencies, 99);
+            max = (latencies.length == 0) ? 0 : latencies[latencies.length - 1];
+            bytesPerOp = ((allocated < 0) || (count == 0)) ? -1 : (double) allocated / count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getOpsPerSecond() {
+            return opsPerSecond;
+        }
+
+        public long getP50Nanos() {
+            return p50;
+        }
+
+        public long getP90Nanos() {
+            return p90;
+        }
+
+        public long getP99Nanos() {
+            return p99;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        /**
+         * @return the average bytes allocated per operation, or -1 if the jvm can't tell
+         */
+        public double getBytesPerOp() {
+            return bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-20s %12.0f %10d %10d %10d %10d %12.1f", name, opsPerSecond, p50, p90, p99, max, bytesPerOp);
+        }
+
+        private static long percentile(long[] sorted, int pct) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.min(sorted.length - 1, (int) (((long) sorted.length * pct) / 100))];
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mebigfatguy.blocklist;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BigBlockListTest {
+
+	@Test
+	public void testAddGet() {
+		BigBlockList<String> bl = new BigBlockList<String>(64, 4);
+		for (int i = 0; i < 5000; i++) {
+			bl.add("Hello" + i);
+		}
+
+		Assert.assertEquals(5000L, bl.sizeAsLong());
+		for (long i = 0; i < 5000; i++) {
+			Assert.assertEquals("Hello" + i, bl.get(i));
+		}
+	}
+
+	@Test
+	public void testInsertRemove() {
+		BigBlockList<String> bl = new BigBlockList<String>(64, 4);
+		for (int i = 0; i < 2000; i++) {
+			bl.add(0L, "Hello" + i);
+		}
+
+		Assert.assertEquals("Hello1999", bl.get(0L));
+		Assert.assertEquals("Hello0", bl.get(1999L));
+
+		bl.add(1000L, "Insert");
+		Assert.assertEquals("Insert", bl.get(1000L));
+		Assert.assertEquals("Insert", bl.remove(1000L));
+
+		for (int i = 0; i < 1000; i++) {
+			bl.remove(500L);
+		}
+		Assert.assertEquals(1000L, bl.sizeAsLong());
+		Assert.assertEquals("Hello1500", bl.get(499L));
+		Assert.assertEquals("Hello499", bl.get(500L));
+	}
+
+	@Test
+	public void testIterator() {
+		BigBlockList<String> bl = new BigBlockList<String>(64, 4);
+		for (int i = 0; i < 1000; i++) {
+			bl.add("Hello" + i);
+		}
+
+		int pos = 0;
+		Iterator<String> it = bl.iterator();
+		while (it.hasNext()) {
+			Assert.assertEquals("Hello" + pos, it.next());
+			if ((pos++ % 2) == 0) {
+				it.remove();
+			}
+		}
+
+		Assert.assertEquals(500, bl.size());
+		Assert.assertEquals("Hello1", bl.get(0L));
+		Assert.assertEquals("Hello999", bl.get(499L));
+	}
+
+	@Test(expected=ConcurrentModificationException.class)
+	public void testConcurrentModificationException() {
+		BigBlockList<String> bl = new BigBlockList<String>();
+		for (int i = 0; i < 70; i++) {
+			bl.add("Hello" + i);
+		}
+
+		for (String s : bl) {
+			if (s.equals("Hello" + 4)) {
+				bl.remove(4L);
+			}
+		}
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		BigBlockList<String> bl = new BigBlockList<String>();
+		bl.add("Hello");
+		bl.get(1L);
+	}
+
+	@Test
+	public void testManyChunks() {
+		BigBlockList<String> bl = new BigBlockList<String>(64, 4);
+		for (int i = 0; i < 20000; i++) {
+			bl.add("Hello" + i);
+		}
+		for (int i = 0; i < 5000; i++) {
+			bl.remove(3L * i);
+		}
+
+		Assert.assertEquals(15000L, bl.sizeAsLong());
+		for (long i = 0; i < 15000; i++) {
+			Assert.assertEquals("Hello" + (((i / 3) * 4) + (i % 3) + 1), bl.get(i));
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBlockSizeTooLarge() {
+		new BigBlockList<String>(Integer.MAX_VALUE / 2, 1024);
+	}
+}
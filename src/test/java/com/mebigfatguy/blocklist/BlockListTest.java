@@ -2,12 +2,16 @@ package com.mebigfatguy.blocklist;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -207,4 +211,440 @@ public class BlockListTest {
             }
         }
 	}
+
+	@Test
+	public void testColdStorage() {
+		BlockList<String> bl = new BlockList<String>();
+		for (int i = 0; i < 1000; i++) {
+			bl.add(i % 10 == 0 ? null : "Hello" + i);
+		}
+
+		bl.enableColdStorage(new ElementCodec<String>() {
+			@Override
+			public void write(String element, DataOutput out) throws IOException {
+				out.writeUTF(element);
+			}
+
+			@Override
+			public String read(DataInput in) throws IOException {
+				return in.readUTF();
+			}
+		}, 60000, 1);
+
+		Assert.assertEquals(4, bl.compressIdleBlocks());
+		Assert.assertEquals("Hello1", bl.get(1));
+		Assert.assertNull(bl.get(500));
+		bl.set(999, "Changed");
+		bl.add(700, "Inserted");
+
+		Assert.assertEquals(0, bl.compressIdleBlocks());
+		Assert.assertEquals(4, bl.compressIdleBlocks());
+		Assert.assertEquals(1001, bl.size());
+		Assert.assertEquals("Hello699", bl.get(699));
+		Assert.assertEquals("Inserted", bl.get(700));
+		Assert.assertEquals("Changed", bl.get(1000));
+		Assert.assertTrue(bl.contains("Hello998"));
+
+		bl.disableColdStorage();
+		Assert.assertEquals("Hello257", bl.get(257));
+	}
+
+	@Test
+	public void testLeafPool() {
+		LeafPool pool = new LeafPool(64, 10);
+		BlockList<String> bl = new BlockList<String>(pool);
+		for (int i = 0; i < 640; i++) {
+			bl.add("Hello" + i);
+		}
+
+		bl.clear();
+		Assert.assertEquals(10, pool.size());
+
+		for (int i = 0; i < 200; i++) {
+			bl.add("Hello" + i);
+		}
+		Assert.assertEquals(6, pool.size());
+
+		for (int i = 0; i < 100; i++) {
+			bl.remove(0);
+		}
+		bl.compact();
+		Assert.assertEquals(8, pool.size());
+		Assert.assertEquals(100, bl.size());
+		Assert.assertEquals("Hello100", bl.get(0));
+		Assert.assertEquals("Hello199", bl.get(99));
+	}
+
+	@Test
+	public void testCursor() {
+		BlockList<String> bl = new BlockList<String>(5);
+		for (int i = 0; i < 200; i++) {
+			bl.add("Hello" + i);
+		}
+
+		BlockList<String>.Cursor c = bl.cursor(63);
+		c.insert("Insert1");
+		c.insert("Insert2");
+		Assert.assertEquals(65, c.position());
+		c.delete(3);
+		Assert.assertEquals(Arrays.asList("Hello66"), c.read(1));
+		c.seek(-3);
+		Assert.assertEquals("Insert1", c.overwrite("Overwrite1"));
+		Assert.assertEquals(Arrays.asList("Insert2", "Hello66", "Hello67"), c.read(3));
+
+		Assert.assertEquals(199, bl.size());
+		Assert.assertEquals("Hello62", bl.get(62));
+		Assert.assertEquals("Overwrite1", bl.get(63));
+		Assert.assertEquals("Insert2", bl.get(64));
+		Assert.assertEquals("Hello66", bl.get(65));
+
+		c.seek(bl.size() - c.position());
+		c.insert("Last");
+		Assert.assertEquals("Last", bl.get(199));
+	}
+
+	@Test(expected=ConcurrentModificationException.class)
+	public void testCursorConcurrentModification() {
+		BlockList<String> bl = new BlockList<String>();
+		for (int i = 0; i < 70; i++) {
+			bl.add("Hello" + i);
+		}
+
+		BlockList<String>.Cursor c = bl.cursor(10);
+		bl.remove(20);
+		c.seek(1);
+	}
+
+	@Test
+	public void testCheckpoints() throws IOException, ClassNotFoundException {
+		BlockList<String> bl = new BlockList<String>();
+		for (int i = 0; i < 10000; i++) {
+			bl.add("Hello" + i);
+		}
+
+		ByteArrayOutputStream base = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(base);
+		bl.writeCheckpoint(oos, false);
+		oos.flush();
+
+		bl.set(10, "Changed10");
+		bl.add(5000, "Insert5000");
+		bl.remove(9999);
+
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		oos = new ObjectOutputStream(delta);
+		bl.writeCheckpoint(oos, false);
+		oos.flush();
+
+		Assert.assertTrue(delta.size() < (base.size() / 10));
+
+		BlockList<String> standby = new BlockList<String>();
+		standby.readCheckpoint(new ObjectInputStream(new ByteArrayInputStream(base.toByteArray())));
+		Assert.assertEquals(10000, standby.size());
+		standby.readCheckpoint(new ObjectInputStream(new ByteArrayInputStream(delta.toByteArray())));
+
+		Assert.assertEquals(bl, standby);
+		Assert.assertEquals("Changed10", standby.get(10));
+		Assert.assertEquals("Insert5000", standby.get(5000));
+	}
+
+	@Test
+	public void testSmallListGrowsIntoBlocks() {
+		BlockList<String> bl = new BlockList<String>(64);
+		Assert.assertTrue(bl.isEmpty());
+
+		for (int i = 0; i < 3; i++) {
+			bl.add(0, "Hello" + i);
+		}
+		Assert.assertEquals("Hello2", bl.get(0));
+
+		for (int i = 3; i < 200; i++) {
+			bl.add(1, "Hello" + i);
+		}
+		Assert.assertEquals(200, bl.size());
+		Assert.assertEquals("Hello199", bl.get(1));
+		Assert.assertEquals("Hello0", bl.get(199));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEmptySerialization() throws IOException, ClassNotFoundException {
+		BlockList<String> bl = new BlockList<String>();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(bl);
+		oos.flush();
+
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		BlockList<String> sbl = (BlockList<String>) ois.readObject();
+
+		Assert.assertEquals(bl, sbl);
+		sbl.add("Hello");
+		Assert.assertEquals(1, sbl.size());
+	}
+
+	@Test
+	public void testBuilder() {
+		List<String> expected = new ArrayList<String>();
+		BlockList.Builder<String> builder = new BlockList.Builder<String>(64);
+		for (int t = 0; t < 4; t++) {
+			BlockList.Builder<String> part = new BlockList.Builder<String>(64);
+			for (int i = 0; i < 100; i++) {
+				part.add("Hello" + t + "-" + i);
+				expected.add("Hello" + t + "-" + i);
+			}
+			List<String> more = Arrays.asList("A" + t, "B" + t, "C" + t);
+			part.addAll(more);
+			expected.addAll(more);
+			builder.combine(part);
+		}
+
+		BlockList<String> bl = builder.build();
+		Assert.assertEquals(expected, bl);
+
+		bl.add(5, "Insert");
+		bl.add("Last");
+		Assert.assertEquals("Insert", bl.get(5));
+		Assert.assertEquals("Last", bl.get(413));
+		Assert.assertTrue(builder.build().isEmpty());
+	}
+
+	@Test
+	public void testRemoveRange() {
+		BlockList<String> bl = new BlockList<String>(64);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++) {
+			bl.add("Hello" + i);
+			expected.add("Hello" + i);
+		}
+
+		bl.removeRange(0, 300);
+		expected.subList(0, 300).clear();
+		Assert.assertEquals(expected, bl);
+
+		bl.removeRange(10, 20);
+		expected.subList(10, 20).clear();
+		Assert.assertEquals(expected, bl);
+
+		bl.removeRange(50, 500);
+		expected.subList(50, 500).clear();
+		Assert.assertEquals(expected, bl);
+
+		bl.removeRange(0, bl.size());
+		Assert.assertTrue(bl.isEmpty());
+		bl.add("Hello");
+		Assert.assertEquals("Hello", bl.get(0));
+	}
+
+	@Test
+	public void testReplaceRange() {
+		BlockList<String> bl = new BlockList<String>(64);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 200; i++) {
+			bl.add("Hello" + i);
+			expected.add("Hello" + i);
+		}
+
+		List<String> replacement = new ArrayList<String>();
+		for (int i = 0; i < 150; i++) {
+			replacement.add("Replace" + i);
+		}
+
+		bl.replaceRange(30, 100, replacement);
+		expected.subList(30, 100).clear();
+		expected.addAll(30, replacement);
+		Assert.assertEquals(expected, bl);
+
+		bl.replaceRange(5, 6, Arrays.asList("A", "B"));
+		expected.set(5, "A");
+		expected.add(6, "B");
+		Assert.assertEquals(expected, bl);
+
+		bl.replaceRange(0, bl.size(), Arrays.asList("C"));
+		Assert.assertEquals(Arrays.asList("C"), bl);
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testRemoveRangeOutOfBounds() {
+		BlockList<String> bl = new BlockList<String>();
+		bl.add("Hello");
+		bl.removeRange(0, 2);
+	}
+
+	@Test
+	public void testGetAllSetAll() {
+		BlockList<String> bl = new BlockList<String>(64);
+		for (int i = 0; i < 1000; i++) {
+			bl.add("Hello" + i);
+		}
+
+		int[] indices = { 999, 3, 500, 64, 3, 0 };
+		String[] out = new String[indices.length];
+		bl.getAll(indices, out);
+		for (int i = 0; i < indices.length; i++) {
+			Assert.assertEquals("Hello" + indices[i], out[i]);
+		}
+
+		bl.setAll(indices, new String[] { "A", "B", "C", "D", "E", "F" });
+		Assert.assertEquals("A", bl.get(999));
+		Assert.assertEquals("E", bl.get(3));
+		Assert.assertEquals("C", bl.get(500));
+		Assert.assertEquals("D", bl.get(64));
+		Assert.assertEquals("F", bl.get(0));
+		Assert.assertEquals("Hello1", bl.get(1));
+
+		int[] sorted = { 1, 2, 998 };
+		out = new String[sorted.length];
+		bl.getAll(sorted, out);
+		Assert.assertArrayEquals(new String[] { "Hello1", "Hello2", "Hello998" }, out);
+	}
+
+	@Test
+	public void testSetAllOutOfBounds() {
+		BlockList<String> bl = new BlockList<String>();
+		bl.add("Hello");
+		bl.add("World");
+		try {
+			bl.setAll(new int[] { 0, 2 }, new String[] { "A", "B" });
+			Assert.fail("setAll accepted an index out of bounds");
+		} catch (IndexOutOfBoundsException e) {
+			Assert.assertEquals(Arrays.asList("Hello", "World"), bl);
+		}
+	}
+
+	@Test
+	public void testHashCodeAndEquals() {
+		BlockList<String> bl = new BlockList<String>(64);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 500; i++) {
+			bl.add("Hello" + i);
+			expected.add("Hello" + i);
+		}
+		bl.add(null);
+		expected.add(null);
+
+		Assert.assertEquals(expected.hashCode(), bl.hashCode());
+		bl.set(100, "World");
+		expected.set(100, "World");
+		Assert.assertEquals(expected.hashCode(), bl.hashCode());
+		bl.add(0, "First");
+		expected.add(0, "First");
+		Assert.assertEquals(expected.hashCode(), bl.hashCode());
+
+		BlockList<String> other = new BlockList<String>(100);
+		other.addAll(expected);
+		other.hashCode();
+		Assert.assertEquals(bl, other);
+		Assert.assertEquals(other, bl);
+		Assert.assertEquals(bl, expected);
+
+		other.set(250, "Other");
+		other.hashCode();
+		Assert.assertNotEquals(bl, other);
+		Assert.assertNotEquals(other, bl);
+	}
+
+	@Test
+	public void testEqualsWithNulls() {
+		BlockList<String> bl = new BlockList<String>();
+		bl.add(null);
+		bl.add("Hello");
+		Assert.assertNotEquals(bl, Arrays.asList(null, "World"));
+		Assert.assertEquals(bl, Arrays.asList(null, "Hello"));
+	}
+
+	@Test
+	public void testColdStorageKeepsCheckpointsClean() throws IOException, ClassNotFoundException {
+		BlockList<String> bl = new BlockList<String>();
+		for (int i = 0; i < 10000; i++) {
+			bl.add("Hello" + i);
+		}
+
+		ByteArrayOutputStream base = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(base);
+		bl.writeCheckpoint(oos, false);
+		oos.flush();
+		int hash = bl.hashCode();
+
+		bl.enableColdStorage(new ElementCodec<String>() {
+			@Override
+			public void write(String element, DataOutput out) throws IOException {
+				out.writeUTF(element);
+			}
+
+			@Override
+			public String read(DataInput in) throws IOException {
+				return in.readUTF();
+			}
+		}, 60000, 1);
+
+		Assert.assertEquals(40, bl.compressIdleBlocks());
+		Assert.assertEquals("Hello5", bl.get(5));
+		Assert.assertEquals("Hello9000", bl.get(9000));
+		Assert.assertEquals(hash, bl.hashCode());
+		bl.set(20, "Changed20");
+
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		oos = new ObjectOutputStream(delta);
+		bl.writeCheckpoint(oos, false);
+		oos.flush();
+
+		Assert.assertTrue(delta.size() < (base.size() / 10));
+
+		BlockList<String> standby = new BlockList<String>();
+		standby.readCheckpoint(new ObjectInputStream(new ByteArrayInputStream(base.toByteArray())));
+		standby.readCheckpoint(new ObjectInputStream(new ByteArrayInputStream(delta.toByteArray())));
+		Assert.assertEquals(bl, standby);
+	}
+
+	@Test
+	public void testCursorDeleteAcrossBlocks() {
+		BlockList<String> bl = new BlockList<String>(64);
+		for (int i = 0; i < 500; i++) {
+			bl.add("Hello" + i);
+		}
+
+		BlockList<String>.Cursor c = bl.cursor(30);
+		c.delete(300);
+		Assert.assertEquals(200, bl.size());
+		Assert.assertEquals(30, c.position());
+		Assert.assertEquals(Arrays.asList("Hello330", "Hello331"), c.read(2));
+
+		c.seek(-2);
+		c.delete(bl.size() - c.position());
+		Assert.assertEquals(30, bl.size());
+		Assert.assertEquals("Hello29", bl.get(29));
+		c.insert("Last");
+		Assert.assertEquals("Last", bl.get(30));
+	}
+
+	@Test
+	public void testSparseSetAllCheckpoint() throws IOException, ClassNotFoundException {
+		BlockList<String> bl = new BlockList<String>();
+		for (int i = 0; i < 10000; i++) {
+			bl.add("Hello" + i);
+		}
+
+		ByteArrayOutputStream base = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(base);
+		bl.writeCheckpoint(oos, false);
+		oos.flush();
+
+		bl.setAll(new int[] { 9990, 10 }, new String[] { "Changed9990", "Changed10" });
+
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		oos = new ObjectOutputStream(delta);
+		bl.writeCheckpoint(oos, false);
+		oos.flush();
+
+		Assert.assertTrue(delta.size() < (base.size() / 10));
+
+		BlockList<String> standby = new BlockList<String>();
+		standby.readCheckpoint(new ObjectInputStream(new ByteArrayInputStream(base.toByteArray())));
+		standby.readCheckpoint(new ObjectInputStream(new ByteArrayInputStream(delta.toByteArray())));
+		Assert.assertEquals("Changed10", standby.get(10));
+		Assert.assertEquals("Changed9990", standby.get(9990));
+		Assert.assertEquals(bl, standby);
+	}
 }
@@ -0,0 +1,131 @@
+package com.mebigfatguy.blocklist;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BufferedBlockListTest {
+
+	@Test
+	public void testScatteredInserts() {
+		BlockList<String> bl = new BlockList<String>(64);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++) {
+			bl.add("Hello" + i);
+			expected.add("Hello" + i);
+		}
+
+		BufferedBlockList<String> buffered = bl.buffered(100);
+		for (int i = 0; i < 50; i++) {
+			int index = (i * 37) % expected.size();
+			buffered.add(index, "Insert" + i);
+			expected.add(index, "Insert" + i);
+			Assert.assertEquals("Insert" + i, buffered.get(index));
+		}
+
+		Assert.assertEquals(1000, bl.size());
+		Assert.assertEquals(1050, buffered.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i), buffered.get(i));
+		}
+
+		buffered.flush();
+		Assert.assertEquals(expected, bl);
+	}
+
+	@Test
+	public void testRemoveAndSet() {
+		BlockList<String> bl = new BlockList<String>(64);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 500; i++) {
+			bl.add("Hello" + i);
+			expected.add("Hello" + i);
+		}
+
+		BufferedBlockList<String> buffered = bl.buffered(1000);
+		Assert.assertEquals("Hello10", buffered.remove(10));
+		expected.remove(10);
+		buffered.add(10, "Insert");
+		expected.add(10, "Insert");
+		Assert.assertEquals("Insert", buffered.set(10, "Set"));
+		expected.set(10, "Set");
+		Assert.assertEquals("Hello299", buffered.set(299, "World"));
+		expected.set(299, "World");
+		Assert.assertEquals("World", bl.get(299));
+
+		Assert.assertEquals(expected, buffered);
+		Assert.assertEquals(expected, bl);
+	}
+
+	@Test
+	public void testFlushThreshold() {
+		BlockList<String> bl = new BlockList<String>();
+		BufferedBlockList<String> buffered = bl.buffered(10);
+		for (int i = 0; i < 9; i++) {
+			buffered.add(0, "Hello" + i);
+		}
+		Assert.assertTrue(bl.isEmpty());
+
+		buffered.add(0, "Hello9");
+		Assert.assertEquals(10, bl.size());
+		Assert.assertEquals("Hello9", bl.get(0));
+	}
+
+	@Test(expected=ConcurrentModificationException.class)
+	public void testBaseModifiedWhilePending() {
+		BlockList<String> bl = new BlockList<String>();
+		bl.add("Hello");
+		BufferedBlockList<String> buffered = bl.buffered(10);
+		buffered.add(0, "World");
+		bl.add("Other");
+		buffered.get(0);
+	}
+
+	@Test
+	public void testFlushAcrossBlocks() {
+		BlockList<String> bl = new BlockList<String>(64);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 640; i++) {
+			bl.add("Hello" + i);
+			expected.add("Hello" + i);
+		}
+
+		BufferedBlockList<String> buffered = bl.buffered(1000);
+		for (int i = 0; i < 100; i++) {
+			buffered.remove(64);
+			expected.remove(64);
+		}
+		for (int i = 0; i < 200; i++) {
+			buffered.add(300, "Insert" + i);
+			expected.add(300, "Insert" + i);
+		}
+		buffered.add("Last");
+		expected.add("Last");
+		Assert.assertEquals(640, bl.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i), buffered.get(i));
+		}
+
+		buffered.flush();
+		Assert.assertEquals(741, bl.size());
+		Assert.assertEquals(expected, bl);
+	}
+
+	@Test
+	public void testFlushIntoEmptyList() {
+		BlockList<String> bl = new BlockList<String>();
+		BufferedBlockList<String> buffered = bl.buffered(1000);
+		for (int i = 0; i < 500; i++) {
+			buffered.add(i / 2, "Hello" + i);
+		}
+		buffered.remove(0);
+
+		buffered.flush();
+		Assert.assertEquals(499, bl.size());
+		Assert.assertEquals("Hello3", bl.get(0));
+		Assert.assertEquals("Hello0", bl.get(498));
+	}
+}
@@ -0,0 +1,105 @@
+package com.mebigfatguy.blocklist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentAppendBlockListTest {
+
+	@Test
+	public void testAddGetSet() {
+		ConcurrentAppendBlockList<String> cl = new ConcurrentAppendBlockList<String>(64);
+		for (int i = 0; i < 1000; i++) {
+			cl.add("Hello" + i);
+		}
+		cl.add(null);
+
+		Assert.assertEquals(1001, cl.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals("Hello" + i, cl.get(i));
+		}
+		Assert.assertNull(cl.get(1000));
+
+		Assert.assertEquals("Hello500", cl.set(500, null));
+		Assert.assertNull(cl.set(500, "World"));
+		Assert.assertEquals("World", cl.get(500));
+
+		BlockList<String> bl = cl.toBlockList();
+		Assert.assertEquals(cl, bl);
+	}
+
+	@Test
+	public void testConcurrentAdds() throws Throwable {
+		final ConcurrentAppendBlockList<Integer> cl = new ConcurrentAppendBlockList<Integer>(64);
+		final int numThreads = 4;
+		final int perThread = 20000;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < numThreads; t++) {
+			final int base = t * perThread;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < perThread; i++) {
+							cl.add(Integer.valueOf(base + i));
+							int sz = cl.size();
+							if (sz > 0) {
+								Assert.assertNotNull(cl.get(sz - 1));
+							}
+						}
+					} catch (Throwable th) {
+						failure.compareAndSet(null, th);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+
+		Assert.assertEquals(numThreads * perThread, cl.size());
+		boolean[] seen = new boolean[numThreads * perThread];
+		int[] last = new int[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			last[t] = -1;
+		}
+		for (Integer e : cl) {
+			int v = e.intValue();
+			Assert.assertFalse(seen[v]);
+			seen[v] = true;
+			int t = v / perThread;
+			Assert.assertTrue(v > last[t]);
+			last[t] = v;
+		}
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testRemove() {
+		ConcurrentAppendBlockList<String> cl = new ConcurrentAppendBlockList<String>();
+		cl.add("Hello");
+		cl.remove(0);
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testClearEmpty() {
+		ConcurrentAppendBlockList<String> cl = new ConcurrentAppendBlockList<String>();
+		cl.clear();
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		ConcurrentAppendBlockList<String> cl = new ConcurrentAppendBlockList<String>();
+		cl.add("Hello");
+		cl.get(1);
+	}
+}
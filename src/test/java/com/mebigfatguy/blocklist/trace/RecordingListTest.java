@@ -0,0 +1,157 @@
+package com.mebigfatguy.blocklist.trace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mebigfatguy.blocklist.BlockList;
+
+public class RecordingListTest {
+
+	@Test
+	public void testRecordAndReplay() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		RecordingList<String> rl = new RecordingList<String>(new BlockList<String>(), baos);
+		for (int i = 0; i < 100; i++) {
+			rl.add("Hello" + i);
+		}
+		rl.add(50, "Insert");
+		rl.addAll(10, Arrays.asList("A", "B", "C"));
+		Assert.assertEquals("Insert", rl.get(53));
+		Assert.assertEquals("Hello99", rl.remove(103));
+		Assert.assertTrue(rl.remove("Hello0"));
+		Assert.assertEquals(-1, rl.indexOf("Missing"));
+
+		Iterator<String> it = rl.iterator();
+		for (int i = 0; i < 5; i++) {
+			it.next();
+		}
+		it.remove();
+		rl.close();
+
+		Assert.assertEquals(101, rl.size());
+
+		TraceReplayer replayer = new TraceReplayer(new ByteArrayInputStream(baos.toByteArray()));
+		Assert.assertEquals(109, replayer.getOperationCount());
+
+		List<Object> list = new ArrayList<Object>();
+		TraceReplayer.Result result = replayer.replay("ArrayList", list);
+		Assert.assertEquals(101, list.size());
+		Assert.assertTrue(result.getP50Nanos() <= result.getMaxNanos());
+
+		list = new BlockList<Object>();
+		replayer.replay("BlockList", list);
+		Assert.assertEquals(101, list.size());
+	}
+
+	@Test
+	public void testListIteratorAfterPrevious() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BlockList<String> bl = new BlockList<String>();
+		RecordingList<String> rl = new RecordingList<String>(bl, baos);
+		for (int i = 0; i < 10; i++) {
+			rl.add("Hello" + i);
+		}
+
+		ListIterator<String> it = rl.listIterator();
+		it.next();
+		it.next();
+		Assert.assertEquals("Hello1", it.previous());
+		it.remove();
+		Assert.assertEquals("Hello2", it.next());
+		it.set("World");
+		Assert.assertEquals("World", it.previous());
+		it.set("Again");
+		rl.close();
+
+		Assert.assertEquals("Hello0", bl.get(0));
+		Assert.assertEquals("Again", bl.get(1));
+		Assert.assertEquals("Hello3", bl.get(2));
+
+		final List<Integer> removed = new ArrayList<Integer>();
+		final List<Integer> set = new ArrayList<Integer>();
+		List<Object> list = new ArrayList<Object>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Object remove(int index) {
+				removed.add(Integer.valueOf(index));
+				return super.remove(index);
+			}
+
+			@Override
+			public Object set(int index, Object element) {
+				set.add(Integer.valueOf(index));
+				return super.set(index, element);
+			}
+		};
+		new TraceReplayer(new ByteArrayInputStream(baos.toByteArray())).replay("ArrayList", list);
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(1)), removed);
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(1)), set);
+	}
+
+	@Test
+	public void testOverlappingIterators() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		RecordingList<String> rl = new RecordingList<String>(new BlockList<String>(), baos);
+		for (int i = 0; i < 100; i++) {
+			rl.add("Hello" + i);
+		}
+
+		Iterator<String> first = rl.listIterator(0);
+		Iterator<String> second = rl.listIterator(50);
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals("Hello" + i, first.next());
+			Assert.assertEquals("Hello" + (50 + i), second.next());
+		}
+
+		for (String s : rl) {
+			if (s.equals("Hello2")) {
+				break;
+			}
+		}
+
+		int count = 0;
+		for (Iterator<String> it = rl.listIterator(90); it.hasNext(); it.next()) {
+			count++;
+		}
+		Assert.assertEquals(10, count);
+		rl.close();
+
+		Assert.assertEquals(Arrays.asList("90:10", "0:10", "50:10", "0:3"), iterations(baos.toByteArray()));
+	}
+
+	/**
+	 * decodes the ITERATE records of a trace, as start:count, in the order they were written
+	 */
+	private static List<String> iterations(byte[] trace) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(trace));
+		Assert.assertEquals(TraceOp.MAGIC, in.readInt());
+		Assert.assertEquals(TraceOp.VERSION, in.readUnsignedByte());
+
+		List<String> iterations = new ArrayList<String>();
+		try {
+			while (true) {
+				TraceOp op = TraceOp.read(in);
+				int index = op.hasIndex ? TraceOp.readIndex(in) : 0;
+				int bulk = op.hasBulk ? TraceOp.readVarInt(in) : 0;
+				if (op == TraceOp.ITERATE) {
+					iterations.add(index + ":" + bulk);
+				}
+			}
+		} catch (EOFException e) {
+			// end of trace
+		}
+		return iterations;
+	}
+}